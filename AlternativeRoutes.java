@@ -0,0 +1,352 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Alternative routes between two nodes, as node id arrays from source to
+ * target. Both engines start from the full shortest-path tree towards the
+ * target, so every later search knows the exact remaining distance of every
+ * node. Like the landmark table and the contraction hierarchy, this treats
+ * the graph as undirected, which is what addDistance builds; on maps with
+ * one-way paths CampusMap returns just the shortest route instead.
+ */
+public final class AlternativeRoutes {
+
+    private AlternativeRoutes() {
+    }
+
+    /**
+     * The k shortest loopless paths, shortest first (Yen's algorithm with
+     * Lawler's refinement). The distances in the target tree are an exact
+     * A* heuristic for every spur search, and a spur search stops as soon as
+     * it settles a node whose tree path is still usable. The spur searches
+     * of each path run in parallel.
+     */
+    public static List<int[]> kShortestPaths(RoutingGraph graph, int source, int target, int k) {
+        List<int[]> accepted = new ArrayList<>();
+        if (k < 1) {
+            return accepted;
+        }
+        Tree tree = Tree.grow(graph, target);
+        if (tree.distances[source] == Double.POSITIVE_INFINITY) {
+            return accepted;
+        }
+
+        int nodeCount = graph.getNodeCount();
+        int[] positions = new int[nodeCount];
+        Arrays.fill(positions, Integer.MAX_VALUE);
+        int[] firstHit = new int[nodeCount];
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<Candidate> seen = new HashSet<>();
+        Candidate shortest = new Candidate(tree.pathFrom(source), tree.distances[source], 0);
+        candidates.add(shortest);
+        seen.add(shortest);
+
+        while (accepted.size() < k && !candidates.isEmpty()) {
+            Candidate next = candidates.poll();
+            int[] path = next.path;
+            accepted.add(path);
+            if (accepted.size() == k) {
+                break;
+            }
+
+            for (int i = 0; i < path.length; i++) {
+                positions[path[i]] = i;
+            }
+            // Lowest path position on each node's tree path; a tree path is usable from spur i if it is above i
+            for (int i = 0; i < tree.orderSize; i++) {
+                int node = tree.order[i];
+                int parent = tree.next[node];
+                firstHit[node] = parent < 0 ? positions[node] : Math.min(positions[node], firstHit[parent]);
+            }
+
+            double[] rootDistances = new double[path.length];
+            for (int i = 1; i < path.length; i++) {
+                rootDistances[i] = rootDistances[i - 1] + graph.distance(path[i - 1], path[i]);
+            }
+            IntList[] blocked = blockedTargets(accepted, path);
+
+            int from = next.deviation;
+            Candidate[] spurs = new Candidate[path.length - 1];
+            IntStream.range(from, path.length - 1).parallel().forEach(i -> spurs[i] =
+                    spur(graph, tree, path, i, rootDistances[i], positions, firstHit, blocked[i]));
+
+            for (Candidate spur : spurs) {
+                if (spur != null && seen.add(spur)) {
+                    candidates.add(spur);
+                }
+            }
+            for (int node : path) {
+                positions[node] = Integer.MAX_VALUE;
+            }
+        }
+        return accepted;
+    }
+
+    // For each spur position, the next nodes of accepted paths that share the root up to it
+    private static IntList[] blockedTargets(List<int[]> accepted, int[] path) {
+        IntList[] blocked = new IntList[path.length];
+        for (int i = 0; i < blocked.length; i++) {
+            blocked[i] = new IntList(4);
+        }
+        for (int[] other : accepted) {
+            int common = 0;
+            while (common < other.length && common < path.length && other[common] == path[common]) {
+                common++;
+            }
+            for (int i = 0; i < common && i + 1 < other.length; i++) {
+                blocked[i].add(other[i + 1]);
+            }
+        }
+        return blocked;
+    }
+
+    // Best path that follows path up to spurIndex and then leaves it by an edge no accepted path took
+    private static Candidate spur(RoutingGraph graph, Tree tree, int[] path, int spurIndex, double rootDistance,
+                                  int[] positions, int[] firstHit, IntList blocked) {
+        int spurNode = path[spurIndex];
+        SearchContext context = SearchContext.forThread(graph.getNodeCount());
+        context.update(spurNode, 0.0, -1, tree.distances[spurNode]);
+
+        while (!context.isQueueEmpty()) {
+            int current = context.poll();
+
+            if (current != spurNode && firstHit[current] > spurIndex) {
+                // The heuristic is exact along this tree path, so nothing left in the queue can beat it
+                int[] spurPath = tree.pathFrom(current);
+                int rootLength = RoutingEngine.pathLength(context, current) - 1;
+                int[] candidate = new int[spurIndex + rootLength + spurPath.length];
+                System.arraycopy(path, 0, candidate, 0, spurIndex);
+                int index = spurIndex + rootLength;
+                for (int node = current; node != -1; node = context.parent(node)) {
+                    candidate[index--] = node;
+                }
+                System.arraycopy(spurPath, 1, candidate, spurIndex + rootLength + 1, spurPath.length - 1);
+                double distance = rootDistance + context.distance(current) + tree.distances[current];
+                return new Candidate(candidate, distance, spurIndex);
+            }
+
+            double currentDistance = context.distance(current);
+            for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                int neighbor = graph.neighbor(current, i);
+                if (positions[neighbor] <= spurIndex || (current == spurNode && contains(blocked, neighbor))) {
+                    continue; // On the root path, or an edge an accepted path already leaves by
+                }
+                double estimate = tree.distances[neighbor];
+                double newDistance = currentDistance + graph.weight(current, i);
+
+                if (estimate != Double.POSITIVE_INFINITY && newDistance < context.distance(neighbor)) {
+                    context.update(neighbor, newDistance, current, newDistance + estimate);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean contains(IntList values, int value) {
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Up to k via-node alternatives, shortest first: for a via node v the
+     * shortest path to v followed by the shortest path from v. A path is
+     * kept if it is at most (1 + maxStretch) times the shortest distance,
+     * has no loops, and shares at most maxSharing times the shortest
+     * distance with the paths kept before it. The first path is always the
+     * shortest one. Costs two full searches, run in parallel, plus a scan
+     * over the via nodes.
+     */
+    public static List<int[]> viaNodeAlternatives(RoutingGraph graph, int source, int target, int k,
+                                                  double maxStretch, double maxSharing) {
+        List<int[]> accepted = new ArrayList<>();
+        if (k < 1) {
+            return accepted;
+        }
+        ForkJoinTask<Tree> forwardTask = ForkJoinPool.commonPool().submit(() -> Tree.grow(graph, source));
+        Tree backward = Tree.grow(graph, target);
+        Tree forward = forwardTask.join();
+
+        double shortest = backward.distances[source];
+        if (shortest == Double.POSITIVE_INFINITY) {
+            return accepted;
+        }
+        double limit = shortest * (1.0 + maxStretch);
+        double sharingLimit = shortest * maxSharing;
+
+        // Via nodes within the stretch limit, by the length of the path through them
+        IntList viaNodes = new IntList(64);
+        for (int i = 0; i < forward.orderSize; i++) {
+            int node = forward.order[i];
+            if (forward.distances[node] + backward.distances[node] <= limit) {
+                viaNodes.add(node);
+            }
+        }
+        Integer[] order = new Integer[viaNodes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = viaNodes.get(i);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(forward.distances[a] + backward.distances[a],
+                forward.distances[b] + backward.distances[b]));
+
+        boolean[] kept = new boolean[graph.getNodeCount()];
+        int[] stamps = new int[graph.getNodeCount()];
+        LongIntMap usedEdges = new LongIntMap(256);
+        int stamp = 0;
+        for (int via : order) {
+            if (accepted.size() == k) {
+                break;
+            }
+            int parent = forward.next[via];
+            if (kept[via] || (parent >= 0 && backward.next[parent] == via)) {
+                continue; // Repeats a kept path, or the same via path as an earlier node of this plateau
+            }
+
+            // Walk both halves in place so rejected via nodes never build a path
+            stamp++;
+            double shared = 0.0;
+            boolean usable = true;
+            for (int node = via; node != -1 && usable; node = forward.next[node]) {
+                stamps[node] = stamp;
+                int previous = forward.next[node];
+                if (previous >= 0 && usedEdges.get(edgeKey(previous, node)) >= 0) {
+                    shared += graph.distance(previous, node);
+                    usable = shared <= sharingLimit;
+                }
+            }
+            int node = via;
+            while (usable && backward.next[node] != -1) {
+                int next = backward.next[node];
+                if (stamps[next] == stamp) {
+                    usable = false; // The two halves meet again
+                } else if (usedEdges.get(edgeKey(node, next)) >= 0) {
+                    shared += graph.distance(node, next);
+                    usable = shared <= sharingLimit;
+                }
+                node = next;
+            }
+            if (!usable) {
+                continue;
+            }
+
+            int[] toVia = forward.pathFrom(via);
+            int[] fromVia = backward.pathFrom(via);
+            int[] path = new int[toVia.length + fromVia.length - 1];
+            for (int i = 0; i < toVia.length; i++) {
+                path[i] = toVia[toVia.length - 1 - i];
+            }
+            System.arraycopy(fromVia, 1, path, toVia.length, fromVia.length - 1);
+            accepted.add(path);
+            for (int i = 0; i < path.length; i++) {
+                kept[path[i]] = true;
+                if (i > 0) {
+                    usedEdges.put(edgeKey(path[i - 1], path[i]), 0);
+                }
+            }
+        }
+        return accepted;
+    }
+
+    private static long edgeKey(int a, int b) {
+        return a < b ? TravelTimeProfiles.edgeKey(a, b) : TravelTimeProfiles.edgeKey(b, a);
+    }
+
+    /**
+     * Full shortest-path tree rooted at one node. next points one step
+     * towards the root and order lists the reached nodes root first.
+     */
+    private static final class Tree {
+        final double[] distances;
+        final int[] next;
+        final int[] order;
+        final int orderSize;
+
+        private Tree(double[] distances, int[] next, int[] order, int orderSize) {
+            this.distances = distances;
+            this.next = next;
+            this.order = order;
+            this.orderSize = orderSize;
+        }
+
+        static Tree grow(RoutingGraph graph, int root) {
+            int nodeCount = graph.getNodeCount();
+            double[] distances = new double[nodeCount];
+            int[] next = new int[nodeCount];
+            int[] order = new int[nodeCount];
+            int orderSize = 0;
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            Arrays.fill(next, -1);
+
+            SearchContext context = SearchContext.forThread(nodeCount);
+            context.update(root, 0.0, -1, 0.0);
+            while (!context.isQueueEmpty()) {
+                int current = context.poll();
+                double currentDistance = context.distance(current);
+                distances[current] = currentDistance;
+                next[current] = context.parent(current);
+                order[orderSize++] = current;
+
+                for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                    int neighbor = graph.neighbor(current, i);
+                    double newDistance = currentDistance + graph.weight(current, i);
+
+                    if (newDistance < context.distance(neighbor)) {
+                        context.update(neighbor, newDistance, current, newDistance);
+                    }
+                }
+            }
+            return new Tree(distances, next, order, orderSize);
+        }
+
+        // Nodes from node to the root
+        int[] pathFrom(int node) {
+            IntList path = new IntList(16);
+            for (int current = node; current != -1; current = next[current]) {
+                path.add(current);
+            }
+            return path.toArray();
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final int[] path;
+        final double distance;
+        final int deviation; // First position that differs from the path it was spurred from
+
+        Candidate(int[] path, double distance, int deviation) {
+            this.path = path;
+            this.distance = distance;
+            this.deviation = deviation;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int comparison = Double.compare(distance, other.distance);
+            if (comparison == 0) {
+                comparison = Integer.compare(path.length, other.path.length);
+            }
+            return comparison != 0 ? comparison : Arrays.compare(path, other.path);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Candidate && Arrays.equals(path, ((Candidate) other).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(path);
+        }
+    }
+}
@@ -1,131 +1,670 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class CampusMap {
-    private Map<String, Location> locations;
+    static final int DEFAULT_LANDMARK_COUNT = 16;
+    static final int DEFAULT_ROUTE_CACHE_SIZE = 1024;
+    static final Duration DEFAULT_ROUTE_CACHE_TTL = Duration.ofMinutes(10);
+    static final int DEFAULT_SHORTEST_PATH_TREES = 16;
+
+    // Writers serialize on this lock; readers only ever touch the published snapshot
+    private final Object writeLock = new Object();
+    private final GraphWriter writer;
+    private volatile GraphSnapshot snapshot;
+    private final RouteCache routeCache;
+    private volatile TravelTimeProfiles travelTimeProfiles = TravelTimeProfiles.empty();
+    private final RoutingMetrics routingMetrics = new RoutingMetrics();
+    private final ShortestPathTrees shortestPathTrees = new ShortestPathTrees(DEFAULT_SHORTEST_PATH_TREES);
 
     public CampusMap() {
-        locations = new HashMap<>();
+        this(null);
     }
 
+    // A map over the given graph file, or an empty one
+    private CampusMap(MappedGraph file) {
+        writer = new GraphWriter(this, file);
+        snapshot = writer.publish();
+        routeCache = new RouteCache(this, DEFAULT_ROUTE_CACHE_SIZE, DEFAULT_ROUTE_CACHE_TTL);
+    }
+
+    /**
+     * Adds or moves a location and publishes the change on its own. Many
+     * changes are cheaper as one {@link #update} batch.
+     */
     public void addLocation(String name, double latitude, double longitude) {
-        Location location = new Location(name, latitude, longitude);
-        locations.put(name, location);
+        update(changes -> changes.addLocation(name, latitude, longitude));
     }
 
     public List<String> getLocationNames() {
-        List<String> locationNames = new ArrayList<>();
-        for (Location location : locations.values()) {
-            locationNames.add(location.getName());
-        }
-        return locationNames;
+        return snapshot.getLocationNames();
     }
 
+    /**
+     * Adds a path in both directions and publishes it on its own. A new or
+     * shorter path discards the landmark table and contraction hierarchy,
+     * which the next ALT or CONTRACTION_HIERARCHY query rebuilds.
+     */
     public void addDistance(String source, String destination, double distance) {
-        Location sourceLocation = locations.get(source);
-        Location destinationLocation = locations.get(destination);
+        update(changes -> changes.addDistance(source, destination, distance));
+    }
 
-        if (sourceLocation != null && destinationLocation != null) {
-            sourceLocation.addNeighbor(destinationLocation, distance);
-            destinationLocation.addNeighbor(sourceLocation, distance);
+    /**
+     * Changes the distance of an existing path. Returns false when either
+     * location or the path between them does not exist.
+     */
+    public boolean updateDistance(String source, String destination, double distance) {
+        boolean[] updated = new boolean[1];
+        update(changes -> updated[0] = changes.updateDistance(source, destination, distance));
+        return updated[0];
+    }
+
+    /**
+     * Removes the path between two locations, for example while it is
+     * closed. Returns false when there was no such path.
+     */
+    public boolean removeDistance(String source, String destination) {
+        boolean[] removed = new boolean[1];
+        update(changes -> removed[0] = changes.removeDistance(source, destination));
+        return removed[0];
+    }
+
+    /**
+     * Applies a batch of changes and publishes them as one new snapshot.
+     * Queries running on other threads keep seeing the previous snapshot
+     * until this returns. Precomputed structures the changes leave valid are
+     * carried over (see GraphSnapshot.inheritFrom); the others are rebuilt
+     * by the first query that needs them, or up front with
+     * prepareLandmarks and prepareContractionHierarchy.
+     */
+    public GraphSnapshot update(Consumer<GraphUpdate> changes) {
+        synchronized (writeLock) {
+            try {
+                applyChanges(changes);
+            } finally {
+                // A batch that fails part-way still publishes what it applied, so readers never lag the writer
+                publish();
+            }
+            return snapshot;
         }
     }
 
+    // Caller holds the write lock
+    private void publish() {
+        GraphSnapshot published = writer.publish();
+        int[] changedEdges = writer.takeChangedEdges();
+        published.inheritFrom(snapshot, changedEdges, writer.takeLocationsMoved());
+        shortestPathTrees.recordChanges(published.getVersion(), changedEdges);
+        snapshot = published;
+    }
+
+    private void applyChanges(Consumer<GraphUpdate> changes) {
+        changes.accept(new GraphUpdate() {
+            @Override
+            public int addLocation(String name, double latitude, double longitude) {
+                return writer.addLocation(name, latitude, longitude);
+            }
+
+            @Override
+            public void addDistance(String source, String destination, double distance) {
+                int sourceId = writer.idOf(source);
+                int destinationId = writer.idOf(destination);
+
+                if (sourceId >= 0 && destinationId >= 0) {
+                    addDistance(sourceId, destinationId, distance);
+                }
+            }
+
+            @Override
+            public int idOf(String name) {
+                return writer.idOf(name);
+            }
+
+            @Override
+            public boolean addDistance(int sourceId, int destinationId, double distance) {
+                checkIds(sourceId, destinationId);
+                boolean added = writer.putNeighbor(sourceId, destinationId, distance);
+                writer.putNeighbor(destinationId, sourceId, distance);
+                return added;
+            }
+
+            @Override
+            public boolean updateDistance(String source, String destination, double distance) {
+                int sourceId = writer.idOf(source);
+                int destinationId = writer.idOf(destination);
+                return sourceId >= 0 && destinationId >= 0 && updateDistance(sourceId, destinationId, distance);
+            }
+
+            @Override
+            public boolean updateDistance(int sourceId, int destinationId, double distance) {
+                checkIds(sourceId, destinationId);
+                if (!writer.containsNeighbor(sourceId, destinationId)) {
+                    return false;
+                }
+                writer.putNeighbor(sourceId, destinationId, distance);
+                writer.putNeighbor(destinationId, sourceId, distance);
+                return true;
+            }
+
+            @Override
+            public boolean removeDistance(String source, String destination) {
+                int sourceId = writer.idOf(source);
+                int destinationId = writer.idOf(destination);
+                return sourceId >= 0 && destinationId >= 0 && removeDistance(sourceId, destinationId);
+            }
+
+            @Override
+            public boolean removeDistance(int sourceId, int destinationId) {
+                checkIds(sourceId, destinationId);
+                boolean removed = writer.removeNeighbor(sourceId, destinationId);
+                writer.removeNeighbor(destinationId, sourceId);
+                return removed;
+            }
+
+            private void checkIds(int sourceId, int destinationId) {
+                if (sourceId < 0 || sourceId >= writer.getNodeCount()
+                        || destinationId < 0 || destinationId >= writer.getNodeCount()) {
+                    throw new IllegalArgumentException("Unknown location id");
+                }
+            }
+        });
+    }
+
+    /**
+     * The current immutable view of the map. Safe to use from any thread.
+     */
+    public GraphSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
     public Location getLocation(String name) {
-        return locations.get(name);
+        return snapshot.getLocation(name);
     }
 
-    public List<Location> findShortestPath(String source, String destination) {
-        Location sourceLocation = locations.get(source);
-        Location destinationLocation = locations.get(destination);
+    public int getLocationCount() {
+        return snapshot.getNodeCount();
+    }
+
+    Location getLocation(int id) {
+        return snapshot.getLocation(id);
+    }
+
+    /**
+     * Writes the current snapshot in the memory-mapped graph format.
+     */
+    public void save(Path file) throws IOException {
+        MappedGraph.write(snapshot, file);
+    }
+
+    /**
+     * Opens a file written by {@link #save(Path)} as a new, editable map
+     * backed by the mapped file. Nothing is copied onto the heap up front,
+     * so opening takes about as long whatever the graph size, and processes
+     * serving the same file share its pages. Queries read the file directly
+     * until an update changes a location or path; only the chunks of 256
+     * locations an update touches are copied then.
+     */
+    public static CampusMap load(Path file) throws IOException {
+        return new CampusMap(MappedGraph.open(file));
+    }
+
+    /**
+     * Haversine heuristic for A*, validated against the current edge distances.
+     */
+    public GeoHeuristic getGeoHeuristic() {
+        return snapshot.getGeoHeuristic();
+    }
+
+    /**
+     * Precomputes landmark distances for the ALT strategy. Without this call
+     * the first ALT query prepares {@value #DEFAULT_LANDMARK_COUNT} landmarks.
+     */
+    public LandmarkTable prepareLandmarks(int landmarkCount) {
+        GraphSnapshot current = snapshot;
+        LandmarkTable table = LandmarkTable.build(current, landmarkCount);
+        current.setLandmarkTable(table);
+        return table;
+    }
+
+    public void saveLandmarks(Path file) throws IOException {
+        getLandmarkTable().save(file);
+    }
+
+    public LandmarkTable loadLandmarks(Path file) throws IOException {
+        GraphSnapshot current = snapshot;
+        LandmarkTable table = LandmarkTable.load(file, current);
+        current.setLandmarkTable(table);
+        return table;
+    }
+
+    public LandmarkTable getLandmarkTable() {
+        return snapshot.getLandmarkTable();
+    }
+
+    /**
+     * Contracts the current graph for the CONTRACTION_HIERARCHY strategy.
+     * Without this call the first such query pays for the preprocessing.
+     */
+    public ContractionHierarchy prepareContractionHierarchy() {
+        GraphSnapshot current = snapshot;
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(current);
+        current.setContractionHierarchy(hierarchy);
+        return hierarchy;
+    }
+
+    public ContractionHierarchy getContractionHierarchy() {
+        return snapshot.getContractionHierarchy();
+    }
+
+    /**
+     * Time-of-day travel times used by findFastestRoute and the
+     * departure-time overload of calculateEstimatedArrivalTime. Edges
+     * without a profile keep the distance-based estimate.
+     */
+    public TravelTimeProfiles getTravelTimeProfiles() {
+        return travelTimeProfiles;
+    }
+
+    public void setTravelTimeProfiles(TravelTimeProfiles profiles) {
+        synchronized (writeLock) {
+            travelTimeProfiles = Objects.requireNonNull(profiles, "profiles");
+        }
+    }
+
+    /**
+     * Sets the profile of the directed edge source -> destination. Copies
+     * all profiles, so bulk loads should build a TravelTimeProfiles once.
+     */
+    public void setTravelTimeProfile(String source, String destination,
+                                     double[] departureMinutes, double[] travelMinutes) {
+        synchronized (writeLock) {
+            int sourceId = writer.idOf(source);
+            int destinationId = writer.idOf(destination);
+
+            if (sourceId >= 0 && destinationId >= 0) {
+                travelTimeProfiles = travelTimeProfiles.toBuilder()
+                        .put(sourceId, destinationId, departureMinutes, travelMinutes)
+                        .build();
+            }
+        }
+    }
+
+    /**
+     * Route with the earliest arrival when leaving at departureMinute
+     * (minutes since midnight). The route's arrival time is the travel time
+     * in minutes. Returns null when there is no path.
+     */
+    public Route findFastestRoute(String source, String destination, double departureMinute) {
+        GraphSnapshot graph = snapshot;
+        TravelTimeProfiles profiles = travelTimeProfiles;
+        Location sourceLocation = graph.getLocation(source);
+        Location destinationLocation = graph.getLocation(destination);
 
         if (sourceLocation == null || destinationLocation == null) {
-            return null; // One or both locations do not exist
+            return null;
+        }
+
+        int destinationId = destinationLocation.getId();
+        SearchContext context = SearchContext.forThread(graph.getNodeCount());
+        boolean timed = routingMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0L;
+        double arrival = RoutingEngine.earliestArrival(graph, profiles, sourceLocation.getId(), destinationId,
+                departureMinute, context);
+        if (timed) {
+            routingMetrics.record(RoutingMetrics.EARLIEST_ARRIVAL, source, destination, graph.getVersion(),
+                    System.nanoTime() - start, arrival != Double.POSITIVE_INFINITY, context);
+        }
+        if (arrival == Double.POSITIVE_INFINITY) {
+            return null;
         }
 
-        Map<Location, Double> distances = new HashMap<>();
-        Map<Location, Location> previousLocations = new HashMap<>();
-        Set<Location> visited = new HashSet<>();
+        List<Location> path = toLocationPath(graph, context, destinationId);
+        double totalDistance = 0.0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            totalDistance += graph.distance(path.get(i).getId(), path.get(i + 1).getId());
+        }
+        return new Route(path, totalDistance, arrival - departureMinute, graph.getVersion());
+    }
 
-        // Initialize distances with infinity and previousLocations with null
-        for (Location location : locations.values()) {
-            distances.put(location, Double.POSITIVE_INFINITY);
-            previousLocations.put(location, null);
+    // Directed edge, published on its own; used by Location.addNeighbor
+    private void putNeighbor(int sourceId, int destinationId, double distance) {
+        synchronized (writeLock) {
+            writer.putNeighbor(sourceId, destinationId, distance);
+            publish();
         }
+    }
+
+    public List<Location> findShortestPath(String source, String destination) {
+        return findShortestPath(source, destination, RoutingStrategy.DIJKSTRA);
+    }
 
-        distances.put(sourceLocation, 0.0); // Distance from source to itself is 0
+    public List<Location> findShortestPath(String source, String destination, RoutingStrategy strategy) {
+        return findShortestPath(snapshot, source, destination, strategy);
+    }
 
-        PriorityQueue<Location> queue = new PriorityQueue<>(Comparator.comparingDouble(distances::get));
-        queue.offer(sourceLocation);
+    /**
+     * Shortest path with its distance and arrival time, served from the
+     * route cache. Returns null when there is no path.
+     */
+    public Route findRoute(String source, String destination) {
+        return findRoute(source, destination, RoutingStrategy.DIJKSTRA);
+    }
 
-        while (!queue.isEmpty()) {
-            Location currentLocation = queue.poll();
+    public Route findRoute(String source, String destination, RoutingStrategy strategy) {
+        return routeCache.get(source, destination, strategy);
+    }
 
-            if (currentLocation == destinationLocation) {
-                break; // Reached the destination
-            }
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Query counters, latency histograms and the slow-query log. Disabled
+     * until {@link RoutingMetrics#setEnabled(boolean)} is called.
+     */
+    public RoutingMetrics getRoutingMetrics() {
+        return routingMetrics;
+    }
+
+    /**
+     * Shortest-path trees kept for the DYNAMIC strategy, with their build
+     * and repair counters.
+     */
+    public ShortestPathTrees getShortestPathTrees() {
+        return shortestPathTrees;
+    }
+
+    Route findRoute(GraphSnapshot graph, String source, String destination, RoutingStrategy strategy) {
+        List<Location> path = findShortestPath(graph, source, destination, strategy);
+        return path == null ? null : Route.of(graph, path);
+    }
+
+    List<Location> findShortestPath(GraphSnapshot graph, String source, String destination,
+                                    RoutingStrategy strategy) {
+        boolean timed = routingMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0L;
+        if (!graph.isSymmetric() && strategy != RoutingStrategy.A_STAR) {
+            // The other strategies search or precompute backwards over the forward paths (see isSymmetric)
+            strategy = RoutingStrategy.DIJKSTRA;
+        }
+        Location sourceLocation = graph.getLocation(source);
+        Location destinationLocation = graph.getLocation(destination);
 
-            if (visited.contains(currentLocation)) {
-                continue; // Already visited this location
+        if (sourceLocation == null || destinationLocation == null) {
+            if (timed) {
+                routingMetrics.record(strategy.name(), source, destination, graph.getVersion(),
+                        System.nanoTime() - start, false);
             }
+            return null; // One or both locations do not exist
+        }
 
-            visited.add(currentLocation);
+        int destinationId = destinationLocation.getId();
 
-            for (Map.Entry<Location, Double> entry : currentLocation.getNeighbors().entrySet()) {
-                Location neighbor = entry.getKey();
-                double distance = entry.getValue();
-                double newDistance = distances.get(currentLocation) + distance;
+        if (strategy == RoutingStrategy.DYNAMIC) {
+            // Left untouched when the tree is current; otherwise it counts the build, repair or fallback search
+            SearchContext context = SearchContext.forThread(graph.getNodeCount());
+            int[] path = shortestPathTrees.findPath(graph, sourceLocation.getId(), destinationId, context);
+            List<Location> locationPath = path == null ? null : toLocationPath(graph, path);
+            if (timed) {
+                routingMetrics.record(strategy.name(), source, destination, graph.getVersion(),
+                        System.nanoTime() - start, path != null, context);
+            }
+            return locationPath;
+        }
 
-                if (newDistance < distances.get(neighbor)) {
-                    distances.put(neighbor, newDistance);
-                    previousLocations.put(neighbor, currentLocation);
-                    queue.offer(neighbor);
-                }
+        if (strategy == RoutingStrategy.CONTRACTION_HIERARCHY) {
+            int[] path = graph.getContractionHierarchy().findPath(sourceLocation.getId(), destinationId);
+            List<Location> locationPath = path == null ? null : toLocationPath(graph, path);
+            if (timed) {
+                routingMetrics.record(strategy.name(), source, destination, graph.getVersion(),
+                        System.nanoTime() - start, path != null, ContractionHierarchy.queryContexts());
             }
+            return locationPath;
         }
 
-        // Reconstruct the shortest path
-        List<Location> shortestPath = new ArrayList<>();
-        Location current = destinationLocation;
+        // Resolve the heuristic before taking this thread's context: building it lazily runs searches on the
+        // common pool, and a join can run one of them on this thread, where it would reset the same context
+        Heuristic heuristic;
+        switch (strategy) {
+            case A_STAR:
+                heuristic = graph.getGeoHeuristic();
+                break;
+            case ALT:
+                heuristic = graph.getLandmarkTable();
+                break;
+            case DIJKSTRA:
+            default:
+                heuristic = null;
+                break;
+        }
 
-        while (current != null) {
-            shortestPath.add(0, current);
-            current = previousLocations.get(current);
+        SearchContext context = SearchContext.forThread(graph.getNodeCount());
+        double distance = heuristic == null
+                ? RoutingEngine.dijkstra(graph, sourceLocation.getId(), destinationId, context)
+                : RoutingEngine.aStar(graph, sourceLocation.getId(), destinationId, heuristic, context);
+        // Destination is not reachable from the source when the distance is infinite
+        List<Location> path = distance == Double.POSITIVE_INFINITY
+                ? null : toLocationPath(graph, context, destinationId);
+        if (timed) {
+            routingMetrics.record(strategy.name(), source, destination, graph.getVersion(),
+                    System.nanoTime() - start, path != null, context);
         }
+        return path;
+    }
+
+    /**
+     * The k shortest loopless paths from source to destination, shortest
+     * first. The list is mutable and can go straight into
+     * filterRoutesByDistance, filterRoutesByArrivalTime and
+     * searchRoutesByLandmark. Empty when either location is unknown or
+     * there is no path. Only the shortest path while the map has one-way
+     * paths (see GraphSnapshot.isSymmetric).
+     */
+    public List<List<Location>> findAlternativeRoutes(String source, String destination, int k) {
+        GraphSnapshot graph = snapshot;
+        Location sourceLocation = graph.getLocation(source);
+        Location destinationLocation = graph.getLocation(destination);
 
-        return shortestPath.isEmpty() ? null : shortestPath;
+        if (sourceLocation == null || destinationLocation == null) {
+            return new ArrayList<>();
+        }
+        if (!graph.isSymmetric()) {
+            return shortestRouteOnly(graph, source, destination, k);
+        }
+        return toLocationPaths(graph, AlternativeRoutes.kShortestPaths(graph, sourceLocation.getId(),
+                destinationLocation.getId(), k));
     }
 
+    /**
+     * Up to k clearly different routes: via-node alternatives at most
+     * (1 + maxStretch) times as long as the shortest route, each sharing at
+     * most maxSharing of the shortest distance with the routes before it.
+     * Cheaper than the k shortest paths, which tend to differ by one detour.
+     * Only the shortest route while the map has one-way paths.
+     */
+    public List<List<Location>> findAlternativeRoutes(String source, String destination, int k,
+                                                      double maxStretch, double maxSharing) {
+        GraphSnapshot graph = snapshot;
+        Location sourceLocation = graph.getLocation(source);
+        Location destinationLocation = graph.getLocation(destination);
 
-    public List<List<Location>> filterRoutesByDistance(List<List<Location>> routes) {
-        routes.sort(Comparator.comparingDouble(this::calculateTotalDistance));
+        if (sourceLocation == null || destinationLocation == null) {
+            return new ArrayList<>();
+        }
+        if (!graph.isSymmetric()) {
+            return shortestRouteOnly(graph, source, destination, k);
+        }
+        return toLocationPaths(graph, AlternativeRoutes.viaNodeAlternatives(graph, sourceLocation.getId(),
+                destinationLocation.getId(), k, maxStretch, maxSharing));
+    }
+
+    // Both alternative searches grow a tree back from the destination, which needs the paths to be symmetric
+    private List<List<Location>> shortestRouteOnly(GraphSnapshot graph, String source, String destination, int k) {
+        List<List<Location>> routes = new ArrayList<>(1);
+        List<Location> path = k > 0 ? findShortestPath(graph, source, destination, RoutingStrategy.DIJKSTRA) : null;
+        if (path != null) {
+            routes.add(path);
+        }
+        return routes;
+    }
+
+    private static List<List<Location>> toLocationPaths(GraphSnapshot graph, List<int[]> paths) {
+        List<List<Location>> routes = new ArrayList<>(paths.size());
+        for (int[] path : paths) {
+            routes.add(toLocationPath(graph, path));
+        }
         return routes;
     }
 
+    /**
+     * Shortest path between two GPS positions, each snapped to the nearest
+     * location that has at least one path. Returns null when the map has no
+     * such location or the two are not connected.
+     */
+    public List<Location> findShortestPath(double sourceLatitude, double sourceLongitude,
+                                           double destinationLatitude, double destinationLongitude) {
+        return findShortestPath(sourceLatitude, sourceLongitude, destinationLatitude, destinationLongitude,
+                RoutingStrategy.DIJKSTRA);
+    }
+
+    public List<Location> findShortestPath(double sourceLatitude, double sourceLongitude,
+                                           double destinationLatitude, double destinationLongitude,
+                                           RoutingStrategy strategy) {
+        GraphSnapshot graph = snapshot;
+        Location source = snap(graph, sourceLatitude, sourceLongitude);
+        Location destination = snap(graph, destinationLatitude, destinationLongitude);
+        if (source == null || destination == null) {
+            return null;
+        }
+        return findShortestPath(graph, source.getName(), destination.getName(), strategy);
+    }
+
+    private static Location snap(GraphSnapshot graph, double latitude, double longitude) {
+        int[] nearest = graph.getSpatialIndex().nearest(latitude, longitude, 1, id -> graph.degree(id) > 0);
+        return nearest.length == 0 ? null : graph.getLocation(nearest[0]);
+    }
+
+    /**
+     * Closest location to the position, or null when the map is empty.
+     */
+    public Location findNearestLocation(double latitude, double longitude) {
+        GraphSnapshot graph = snapshot;
+        int nearest = graph.getSpatialIndex().nearest(latitude, longitude);
+        return nearest < 0 ? null : graph.getLocation(nearest);
+    }
+
+    /**
+     * Up to k locations, closest first.
+     */
+    public List<Location> findNearestLocations(double latitude, double longitude, int k) {
+        GraphSnapshot graph = snapshot;
+        return toLocations(graph, graph.getSpatialIndex().nearest(latitude, longitude, k));
+    }
+
+    /**
+     * Locations within radiusMeters of the position, closest first.
+     */
+    public List<Location> findLocationsWithin(double latitude, double longitude, double radiusMeters) {
+        GraphSnapshot graph = snapshot;
+        return toLocations(graph, graph.getSpatialIndex().withinRadius(latitude, longitude, radiusMeters));
+    }
+
+    public List<Location> findLocationsInBox(double minLatitude, double minLongitude,
+                                             double maxLatitude, double maxLongitude) {
+        GraphSnapshot graph = snapshot;
+        return toLocations(graph,
+                graph.getSpatialIndex().withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude));
+    }
+
+    private static List<Location> toLocations(GraphSnapshot graph, int[] ids) {
+        List<Location> locations = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            locations.add(graph.getLocation(id));
+        }
+        return locations;
+    }
+
+    static List<Location> toLocationPath(GraphSnapshot graph, int[] path) {
+        List<Location> locationPath = new ArrayList<>(path.length);
+        for (int id : path) {
+            locationPath.add(graph.getLocation(id));
+        }
+        return locationPath;
+    }
+
+    // Reconstruct the shortest path by walking parents back from the destination
+    static List<Location> toLocationPath(GraphSnapshot graph, SearchContext context, int destinationId) {
+        List<Location> shortestPath = new ArrayList<>(RoutingEngine.pathLength(context, destinationId));
+        for (int id = destinationId; id != -1; id = context.parent(id)) {
+            shortestPath.add(graph.getLocation(id));
+        }
+        Collections.reverse(shortestPath);
+        return shortestPath;
+    }
+
+
+    /**
+     * Shortest distances from every source to every destination, plus the
+     * matching estimated arrival times when includeArrivalTimes is set.
+     * Names that are not on the map get rows or columns of infinity.
+     */
+    public DistanceMatrix computeDistanceMatrix(List<String> sources, List<String> destinations,
+                                                boolean includeArrivalTimes) {
+        GraphSnapshot graph = snapshot;
+        return DistanceMatrix.compute(graph, toIds(graph, sources), toIds(graph, destinations), includeArrivalTimes);
+    }
+
+    static int[] toIds(GraphSnapshot graph, List<String> names) {
+        int[] ids = new int[names.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Location location = graph.getLocation(names.get(i));
+            ids[i] = location == null ? -1 : location.getId();
+        }
+        return ids;
+    }
+
+    public List<List<Location>> filterRoutesByDistance(List<List<Location>> routes) {
+        return replaceContents(routes, RouteSet.of(this, routes).sortedByDistance());
+    }
+
     public List<List<Location>> filterRoutesByArrivalTime(List<List<Location>> routes) {
-        routes.sort(Comparator.comparingDouble(this::calculateEstimatedArrivalTime));
+        return replaceContents(routes, RouteSet.of(this, routes).sortedByArrivalTime());
+    }
+
+    // These two have always sorted the caller's list in place; RouteSet itself leaves its input alone
+    private static List<List<Location>> replaceContents(List<List<Location>> routes, List<List<Location>> sorted) {
+        for (int i = 0; i < sorted.size(); i++) {
+            routes.set(i, sorted.get(i));
+        }
         return routes;
     }
 
+    /**
+     * Precomputes distance and arrival time for every route once, for
+     * repeated landmark filtering and ranking without touching the input.
+     */
+    public RouteSet createRouteSet(Collection<? extends List<Location>> routes) {
+        return RouteSet.of(this, routes);
+    }
+
     public List<List<Location>> searchRoutesByLandmark(List<List<Location>> routes, String landmark) {
-        List<List<Location>> filteredRoutes = new ArrayList<>();
-
-        if (routes != null) {
-            for (List<Location> route : routes) {
-                if (route != null && !route.isEmpty()) {
-                    for (Location location : route) {
-                        if (location != null && location.getName() != null && location.getName().equals(landmark)) {
-                            filteredRoutes.add(route);
-                            break;
-                        }
-                    }
-                }
-            }
+        if (routes == null) {
+            return new ArrayList<>();
         }
-
-        return filteredRoutes;
+        return RouteSet.of(this, routes).withLandmark(landmark).getRoutes();
     }
 
     double  calculateTotalDistance(List<Location> route) {
+        return calculateTotalDistance(snapshot, route);
+    }
+
+    double calculateTotalDistance(GraphSnapshot graph, List<Location> route) {
         double totalDistance = 0.0;
 
         for (int i = 0; i < route.size() - 1; i++) {
@@ -133,15 +672,30 @@ public class CampusMap {
             Location destinationLocation = route.get(i + 1);
 
             if (sourceLocation != null && destinationLocation != null) {
-                double distance = sourceLocation.getDistanceTo(destinationLocation);
-                totalDistance += distance;
+                totalDistance += distanceBetween(graph, sourceLocation, destinationLocation);
             }
         }
 
         return totalDistance;
     }
 
+    private double distanceBetween(GraphSnapshot graph, Location sourceLocation, Location destinationLocation) {
+        if (isOnGraph(graph, sourceLocation) && isOnGraph(graph, destinationLocation)) {
+            return graph.distance(sourceLocation.getId(), destinationLocation.getId());
+        }
+        return sourceLocation.getDistanceTo(destinationLocation);
+    }
+
+    // Whether the location belongs to this map and already existed in graph
+    boolean isOnGraph(GraphSnapshot graph, Location location) {
+        return location.owner == this && location.id < graph.getNodeCount();
+    }
+
     double calculateEstimatedArrivalTime(List<Location> route) {
+        return calculateEstimatedArrivalTime(snapshot, route);
+    }
+
+    double calculateEstimatedArrivalTime(GraphSnapshot graph, List<Location> route) {
         double totalTravelTime = 0.0;
 
         for (int i = 0; i < route.size() - 1; i++) {
@@ -149,24 +703,54 @@ public class CampusMap {
             Location destinationLocation = route.get(i + 1);
 
             if (sourceLocation != null && destinationLocation != null) {
-                double distance = sourceLocation.getDistanceTo(destinationLocation);
-                double averageTravelTime = calculateAverageTravelTime(distance);
-                double adjustedTravelTime = applyTrafficPatternAdjustments(averageTravelTime);
-                totalTravelTime += adjustedTravelTime;
+                double distance = distanceBetween(graph, sourceLocation, destinationLocation);
+                totalTravelTime += estimateEdgeTravelTime(distance);
             }
         }
 
         return totalTravelTime;
     }
 
-    private double calculateAverageTravelTime(double distance) {
+    /**
+     * Travel time in minutes along the route when leaving at departureMinute,
+     * using the travel time profiles.
+     */
+    double calculateEstimatedArrivalTime(List<Location> route, double departureMinute) {
+        GraphSnapshot graph = snapshot;
+        TravelTimeProfiles profiles = travelTimeProfiles;
+        double time = departureMinute;
+
+        for (int i = 0; i < route.size() - 1; i++) {
+            Location sourceLocation = route.get(i);
+            Location destinationLocation = route.get(i + 1);
+
+            if (sourceLocation != null && destinationLocation != null) {
+                double distance = distanceBetween(graph, sourceLocation, destinationLocation);
+                if (isOnGraph(graph, sourceLocation) && isOnGraph(graph, destinationLocation)) {
+                    time += profiles.travelTime(sourceLocation.getId(), destinationLocation.getId(), distance, time);
+                } else {
+                    time += estimateEdgeTravelTime(distance);
+                }
+            }
+        }
+
+        return time - departureMinute;
+    }
+
+    // Travel time in minutes for one edge, including the traffic adjustment
+    static double estimateEdgeTravelTime(double distance) {
+        double averageTravelTime = calculateAverageTravelTime(distance);
+        return applyTrafficPatternAdjustments(averageTravelTime);
+    }
+
+    private static double calculateAverageTravelTime(double distance) {
         // Assuming an average speed of 50 meters per minute
         double averageSpeed = 500.0;
         return distance / averageSpeed;
     }
 
 
-    private double applyTrafficPatternAdjustments(double travelTime) {
+    private static double applyTrafficPatternAdjustments(double travelTime) {
         // Apply traffic pattern adjustments based on specific conditions
         if (travelTime >= 5 && travelTime < 10) {
             // Moderate traffic, increase travel time by 10%
@@ -185,21 +769,53 @@ public class CampusMap {
         private final String name;
         private final double latitude;
         private final double longitude;
-        private final Map<Location, Double> neighbors;
-
+        private final CampusMap owner;
+        private final int id;
+        // Adjacency of a location created on its own, outside any CampusMap; null for map locations
+        private final Map<Location, Double> detachedNeighbors;
+
+        /**
+         * A location outside any map. It keeps its own neighbours, as
+         * locations always did, but routing only sees locations added
+         * through CampusMap.addLocation.
+         */
         public Location(String name, double latitude, double longitude) {
             this.name = name;
             this.latitude = latitude;
             this.longitude = longitude;
-            this.neighbors = new HashMap<>();
+            this.owner = null;
+            this.id = -1;
+            this.detachedNeighbors = new HashMap<>();
+        }
+
+        Location(String name, double latitude, double longitude, CampusMap owner, int id) {
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.owner = owner;
+            this.id = id;
+            this.detachedNeighbors = null;
         }
 
         public void addNeighbor(Location neighbor, double distance) {
-            neighbors.put(neighbor, distance);
+            if (owner == null) {
+                detachedNeighbors.put(neighbor, distance);
+                return;
+            }
+            if (neighbor.owner != owner) {
+                throw new IllegalStateException("Both locations must belong to the same CampusMap");
+            }
+            owner.putNeighbor(id, neighbor.id, distance);
         }
 
         public double getDistanceTo(Location neighbor) {
-            return neighbors.getOrDefault(neighbor, Double.POSITIVE_INFINITY);
+            if (owner == null) {
+                return detachedNeighbors.getOrDefault(neighbor, Double.POSITIVE_INFINITY);
+            }
+            if (neighbor.owner != owner) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return owner.snapshot.distance(id, neighbor.id);
         }
 
         public String getName() {
@@ -214,8 +830,16 @@ public class CampusMap {
             return longitude;
         }
 
+        public int getId() {
+            return id;
+        }
+
+        // Map locations get a read-only copy of their adjacency row; detached ones their own, editable map
         public Map<Location, Double> getNeighbors() {
-            return neighbors;
+            if (owner == null) {
+                return detachedNeighbors;
+            }
+            return owner.snapshot.neighborsOf(id);
         }
     }
 
@@ -281,44 +905,8 @@ public class CampusMap {
         }
 
         //Sorting and filtering
-        List<List<Location>> routes = new ArrayList<>();
-        // Route 1: Shortest path from Great Hall to Night Market via UGGC
-        List<Location> route1 = new ArrayList<>();
-        route1.add(campusMap.getLocation("Great Hall"));
-        route1.add(campusMap.getLocation("Cash Office"));
-        route1.add(campusMap.getLocation("Career and Counseling Centre"));
-        route1.add(campusMap.getLocation("Legon Hall Annex C"));
-        route1.add(campusMap.getLocation("WELLDONE RESEARCH CONSULT"));
-        route1.add(campusMap.getLocation("University of Ghana Guest Centre"));
-        route1.add(campusMap.getLocation("University of Ghana Basic School"));
-        route1.add(campusMap.getLocation("Centre for Aging Studies"));
-        route1.add(campusMap.getLocation("Night Market"));
-        routes.add(route1);
-
-        // Route 2: Alternative path from Great Hall to Night Market via Legon Hall Annexes
-        List<Location> route2 = new ArrayList<>();
-        route2.add(campusMap.getLocation("Great Hall"));
-        route2.add(campusMap.getLocation("Cash Office"));
-        route2.add(campusMap.getLocation("Career and Counseling Centre"));
-        route2.add(campusMap.getLocation("Legon Hall Annex A"));
-        route2.add(campusMap.getLocation("Legon Hall Annex B"));
-        route2.add(campusMap.getLocation("BrightHills Research"));
-        route2.add(campusMap.getLocation("Centre for Aging Studies"));
-        route2.add(campusMap.getLocation("Night Market"));
-        routes.add(route2);
-
-        // Route 3: Another alternative path from Great Hall to Night Market
-        List<Location> route3 = new ArrayList<>();
-        route3.add(campusMap.getLocation("Great Hall"));
-        route3.add(campusMap.getLocation("Public Affairs Directorate"));
-        route3.add(campusMap.getLocation("Viannis Bistro"));
-        route3.add(campusMap.getLocation("Sociology Department"));
-        route3.add(campusMap.getLocation("School of Languages"));
-        route3.add(campusMap.getLocation("University of Ghana Gust Centre"));
-        route3.add(campusMap.getLocation("University of Ghana Basic School"));
-        route3.add(campusMap.getLocation("Centre for Aging Studies"));
-        route3.add(campusMap.getLocation("Night Market"));
-        routes.add(route3);
+        // The three shortest alternatives from Great Hall to Night Market
+        List<List<Location>> routes = campusMap.findAlternativeRoutes(source, destination, 3);
 
         // Filter routes by distance
         List<List<Location>> routesSortedByDistance = campusMap.filterRoutesByDistance(routes);
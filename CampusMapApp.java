@@ -1,4 +1,5 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -12,11 +13,15 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.List;
 
 public class CampusMapApp extends Application {
 
     private CampusMap campusMap;
+    private RouteQueryPipeline routeQueries;
 
     private ComboBox<String> sourceComboBox;
     private ComboBox<String> destinationComboBox;
@@ -29,15 +34,18 @@ public class CampusMapApp extends Application {
 
     @Override
     public void start(Stage primaryStage) {
-        // Initialize CampusMap and add locations and distances
-        initializeCampusMap();
-
         // Create UI controls
         sourceComboBox = new ComboBox<>();
         destinationComboBox = new ComboBox<>();
         calculateButton = new Button("Calculate");
         resultLabel = new Label();
 
+        // Initialize CampusMap and add locations and distances
+        initializeCampusMap();
+
+        // Searches run in the background and report back on the JavaFX thread
+        routeQueries = new RouteQueryPipeline(campusMap, Platform::runLater);
+
         // Set event handler for the Calculate button
         calculateButton.setOnAction(event -> calculateButtonClicked());
 
@@ -69,6 +77,18 @@ public class CampusMapApp extends Application {
     }
 
     private void initializeCampusMap() {
+        // A prebuilt graph file (--graph=path) skips the hard-coded setup below
+        String graphFile = getParameters().getNamed().get("graph");
+        if (graphFile != null) {
+            try {
+                campusMap = CampusMap.load(Path.of(graphFile));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not load graph file " + graphFile, e);
+            }
+            populateLocationChoices();
+            return;
+        }
+
         // Create CampusMap instance
         campusMap = new CampusMap();
 
@@ -109,7 +129,10 @@ public class CampusMapApp extends Application {
         campusMap.addDistance("Centre for Aging Studies", "Night Market", 170); // Example distance in meters
         campusMap.addDistance("Great Hall", "Public Affairs Directorate", 350); // Example distance in meters
 
+        populateLocationChoices();
+    }
 
+    private void populateLocationChoices() {
         // Populate source and destination ComboBoxes with location names
         List<String> locationNames = campusMap.getLocationNames();
         ObservableList<String> observableLocationNames = FXCollections.observableArrayList(locationNames);
@@ -118,34 +141,47 @@ public class CampusMapApp extends Application {
     }
     
 
+    @Override
+    public void stop() {
+        if (routeQueries != null) {
+            routeQueries.close();
+        }
+    }
+
     private void calculateButtonClicked() {
         String source = sourceComboBox.getValue();
         String destination = destinationComboBox.getValue();
 
         if (source != null && destination != null) {
-            // Find shortest path
-            List<CampusMap.Location> shortestPath = campusMap.findShortestPath(source, destination);
+            // Find shortest path; asking again for the same route joins the search already running
+            resultLabel.setText("Calculating...");
+            routeQueries.submit(source, destination, RoutingStrategy.DIJKSTRA,
+                    route -> showRoute(source, destination, route),
+                    failure -> resultLabel.setText("Could not calculate a route: " + failure.getMessage()));
+        } else {
+            routeQueries.cancel();
+            resultLabel.setText("Please select source and destination");
+        }
+    }
 
-            if (shortestPath != null) {
-                StringBuilder sb = new StringBuilder();
-                sb.append("Shortest Path from ").append(source).append(" to ").append(destination).append(". Starting from:\n");
+    private void showRoute(String source, String destination, Route route) {
+        if (route != null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Shortest Path from ").append(source).append(" to ").append(destination).append(". Starting from:\n");
 
-                for (CampusMap.Location location : shortestPath) {
-                    sb.append(location.getName()).append("\n");
-                }
+            for (CampusMap.Location location : route.getPath()) {
+                sb.append(location.getName()).append("\n");
+            }
 
-                double totalDistance = campusMap.calculateTotalDistance(shortestPath);
-                double estimatedArrivalTime = campusMap.calculateEstimatedArrivalTime(shortestPath);
+            double totalDistance = route.getTotalDistance();
+            double estimatedArrivalTime = route.getEstimatedArrivalTime();
 
-                sb.append("Total Distance: ").append(totalDistance).append(" meters\n");
-                sb.append("Estimated Arrival Time: ").append(estimatedArrivalTime).append(" minutes");
+            sb.append("Total Distance: ").append(totalDistance).append(" meters\n");
+            sb.append("Estimated Arrival Time: ").append(estimatedArrivalTime).append(" minutes");
 
-                resultLabel.setText(sb.toString());
-            } else {
-                resultLabel.setText("No path found between " + source + " and " + destination);
-            }
+            resultLabel.setText(sb.toString());
         } else {
-            resultLabel.setText("Please select source and destination");
+            resultLabel.setText("No path found between " + source + " and " + destination);
         }
     }
 
@@ -0,0 +1,523 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Contraction Hierarchies over a {@link RoutingGraph}. Nodes are contracted
+ * one by one in order of edge difference; whenever the only shortest path
+ * between two neighbours runs through the contracted node, a shortcut edge
+ * remembering that middle node is added. Queries run a bidirectional
+ * Dijkstra that only follows edges towards higher-ranked nodes, then unpack
+ * the shortcuts back into original edges. The graph is treated as
+ * undirected, which is what addDistance builds, so one upward graph serves
+ * both search directions; CampusMap uses Dijkstra instead on maps with
+ * one-way paths.
+ */
+public final class ContractionHierarchy {
+    private static final int DEFAULT_WITNESS_SETTLE_LIMIT = 500;
+    // Priorities only need a cheap estimate of the shortcut count
+    private static final int PRIORITY_SETTLE_LIMIT = 40;
+
+    private static final ThreadLocal<SearchContext[]> QUERY_CONTEXTS =
+            ThreadLocal.withInitial(() -> new SearchContext[2]);
+
+    private final RoutingGraph graph;
+    private final int[] ranks;
+
+    // Upward graph: for each node, edges to higher-ranked neighbours only
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upWeights;
+    private final int[] upMiddles; // -1 for original edges, else the contracted middle node
+
+    private ContractionHierarchy(RoutingGraph graph, int[] ranks, int[] upOffsets, int[] upTargets,
+                                 double[] upWeights, int[] upMiddles) {
+        this.graph = graph;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+    }
+
+    public static ContractionHierarchy build(RoutingGraph graph) {
+        return build(graph, DEFAULT_WITNESS_SETTLE_LIMIT);
+    }
+
+    /**
+     * Contracts the whole graph. The initial edge difference of every node is
+     * simulated in parallel; the contraction itself is sequential. A smaller
+     * witness settle limit speeds preprocessing up at the cost of extra
+     * (harmless) shortcuts.
+     */
+    public static ContractionHierarchy build(RoutingGraph graph, int witnessSettleLimit) {
+        return new Builder(graph, witnessSettleLimit).contract();
+    }
+
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    public int getShortcutCount() {
+        int shortcuts = 0;
+        for (int middle : upMiddles) {
+            if (middle >= 0) {
+                shortcuts++;
+            }
+        }
+        return shortcuts;
+    }
+
+    public double distance(int source, int target) {
+        SearchContext[] contexts = queryContexts();
+        int meeting = search(source, target, contexts);
+        return meeting < 0 ? Double.POSITIVE_INFINITY
+                : contexts[0].distance(meeting) + contexts[1].distance(meeting);
+    }
+
+    /**
+     * Shortest path from source to target as original node ids, or null when
+     * target cannot be reached.
+     */
+    public int[] findPath(int source, int target) {
+        SearchContext[] contexts = queryContexts();
+        int meeting = search(source, target, contexts);
+        if (meeting < 0) {
+            return null;
+        }
+        SearchContext forward = contexts[0];
+        SearchContext backward = contexts[1];
+
+        // Path in the hierarchy: source .. meeting .. target, possibly through shortcuts
+        int forwardLength = RoutingEngine.pathLength(forward, meeting);
+        int backwardLength = RoutingEngine.pathLength(backward, meeting);
+        int[] hierarchyPath = new int[forwardLength + backwardLength - 1];
+        int index = forwardLength - 1;
+        for (int node = meeting; node != -1; node = forward.parent(node)) {
+            hierarchyPath[index--] = node;
+        }
+        index = forwardLength;
+        for (int node = backward.parent(meeting); node != -1; node = backward.parent(node)) {
+            hierarchyPath[index++] = node;
+        }
+
+        IntList path = new IntList(hierarchyPath.length * 2);
+        path.add(hierarchyPath[0]);
+        for (int i = 0; i + 1 < hierarchyPath.length; i++) {
+            unpack(hierarchyPath[i], hierarchyPath[i + 1], path);
+        }
+        return path.toArray();
+    }
+
+    // This thread's forward and backward query contexts, as left by its last findPath
+    static SearchContext[] queryContexts() {
+        return QUERY_CONTEXTS.get();
+    }
+
+    private SearchContext prepare(SearchContext[] contexts, int index) {
+        int nodeCount = graph.getNodeCount();
+        if (contexts[index] == null || contexts[index].capacity() < nodeCount) {
+            contexts[index] = new SearchContext(nodeCount);
+        }
+        contexts[index].reset();
+        return contexts[index];
+    }
+
+    // Bidirectional upward search; returns the best meeting node or -1
+    private int search(int source, int target, SearchContext[] contexts) {
+        SearchContext forward = prepare(contexts, 0);
+        SearchContext backward = prepare(contexts, 1);
+
+        forward.update(source, 0.0, -1, 0.0);
+        backward.update(target, 0.0, -1, 0.0);
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+
+        boolean forwardTurn = true;
+        while (true) {
+            boolean forwardDone = forward.isQueueEmpty() || forward.peekKey() >= best;
+            boolean backwardDone = backward.isQueueEmpty() || backward.peekKey() >= best;
+            if (forwardDone && backwardDone) {
+                break;
+            }
+            if (forwardDone) {
+                forwardTurn = false;
+            } else if (backwardDone) {
+                forwardTurn = true;
+            }
+
+            SearchContext current = forwardTurn ? forward : backward;
+            SearchContext other = forwardTurn ? backward : forward;
+            int node = current.poll();
+            double nodeDistance = current.distance(node);
+
+            if (other.isReached(node)) {
+                double total = nodeDistance + other.distance(node);
+                if (total < best) {
+                    best = total;
+                    meeting = node;
+                }
+            }
+
+            for (int edge = upOffsets[node], end = upOffsets[node + 1]; edge < end; edge++) {
+                int neighbor = upTargets[edge];
+                double newDistance = nodeDistance + upWeights[edge];
+                if (newDistance < current.distance(neighbor)) {
+                    current.update(neighbor, newDistance, node, newDistance);
+                }
+            }
+            forwardTurn = !forwardTurn;
+        }
+        return meeting;
+    }
+
+    // Appends the original nodes after from on the edge (from, to), excluding from itself
+    private void unpack(int from, int to, IntList path) {
+        IntList pending = new IntList(16);
+        pending.add(to);
+        pending.add(from);
+
+        // Depth-first over shortcut halves, always expanding the leftmost pending edge
+        while (!pending.isEmpty()) {
+            int edgeFrom = pending.removeLast();
+            int edgeTo = pending.removeLast();
+            int middle = upMiddles[findUpEdge(edgeFrom, edgeTo)];
+            if (middle < 0) {
+                path.add(edgeTo);
+            } else {
+                pending.add(edgeTo);
+                pending.add(middle);
+                pending.add(middle);
+                pending.add(edgeFrom);
+            }
+        }
+    }
+
+    private int findUpEdge(int a, int b) {
+        int low = ranks[a] < ranks[b] ? a : b;
+        int high = low == a ? b : a;
+        for (int edge = upOffsets[low], end = upOffsets[low + 1]; edge < end; edge++) {
+            if (upTargets[edge] == high) {
+                return edge;
+            }
+        }
+        throw new IllegalStateException("Missing hierarchy edge " + a + " - " + b);
+    }
+
+    /**
+     * Compares CH distances with plain Dijkstra on random query pairs and
+     * returns the number of mismatches. Meant as a sanity check after
+     * building a hierarchy for a new map.
+     */
+    public int verifyAgainstDijkstra(int queryPairs, long seed) {
+        int nodeCount = graph.getNodeCount();
+        if (nodeCount == 0) {
+            return 0;
+        }
+        Random random = new Random(seed);
+        int mismatches = 0;
+
+        for (int i = 0; i < queryPairs; i++) {
+            int source = random.nextInt(nodeCount);
+            int target = random.nextInt(nodeCount);
+
+            SearchContext context = SearchContext.forThread(nodeCount);
+            double expected = RoutingEngine.dijkstra(graph, source, target, context);
+            double actual = distance(source, target);
+
+            boolean bothUnreachable = expected == Double.POSITIVE_INFINITY && actual == Double.POSITIVE_INFINITY;
+            if (!bothUnreachable && Math.abs(expected - actual) > 1e-9 * Math.max(1.0, expected)) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Mutable adjacency used while contracting. Every edge is stored at both
+     * end points; contracted nodes are removed from their neighbours' lists
+     * as soon as their upward edges have been recorded.
+     */
+    private static final class Builder {
+        private final RoutingGraph graph;
+        private final int witnessSettleLimit;
+        private final int nodeCount;
+
+        private final int[][] targets;
+        private final double[][] weights;
+        private final int[][] middles;
+        private final int[] degrees;
+        private final int[] contractedNeighbors;
+        private final int[] levels;
+        private final int[] ranks;
+
+        // Upward edges recorded at contraction time, one row per node
+        private final int[][] upTargets;
+        private final double[][] upWeights;
+        private final int[][] upMiddles;
+
+        // Scratch buffers for the shortcuts of the node being contracted
+        private final IntList shortcutFrom = new IntList(16);
+        private final IntList shortcutTo = new IntList(16);
+        private final DoubleList shortcutWeight = new DoubleList(16);
+
+        Builder(RoutingGraph graph, int witnessSettleLimit) {
+            this.graph = graph;
+            this.witnessSettleLimit = witnessSettleLimit;
+            this.nodeCount = graph.getNodeCount();
+            targets = new int[nodeCount][];
+            weights = new double[nodeCount][];
+            middles = new int[nodeCount][];
+            degrees = new int[nodeCount];
+            contractedNeighbors = new int[nodeCount];
+            levels = new int[nodeCount];
+            ranks = new int[nodeCount];
+            upTargets = new int[nodeCount][];
+            upWeights = new double[nodeCount][];
+            upMiddles = new int[nodeCount][];
+
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = graph.degree(node);
+                targets[node] = new int[Math.max(degree, 2)];
+                weights[node] = new double[Math.max(degree, 2)];
+                middles[node] = new int[Math.max(degree, 2)];
+                for (int i = 0; i < degree; i++) {
+                    int neighbor = graph.neighbor(node, i);
+                    if (neighbor != node) {
+                        putEdge(node, neighbor, graph.weight(node, i), -1);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy contract() {
+            // Edge differences of the untouched graph are independent, so simulate them in parallel
+            int[] initialPriorities = new int[nodeCount];
+            ThreadLocal<Simulation> simulations = ThreadLocal.withInitial(() -> new Simulation(this, priorityLimit()));
+            IntStream.range(0, nodeCount).parallel().forEach(node ->
+                    initialPriorities[node] = simulations.get().priority(node));
+
+            // The search context's indexed heap doubles as the contraction queue
+            SearchContext queue = new SearchContext(nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                queue.update(node, initialPriorities[node], -1, initialPriorities[node]);
+            }
+
+            Simulation simulation = new Simulation(this, priorityLimit());
+            Simulation contraction = new Simulation(this, witnessSettleLimit);
+            int nextRank = 0;
+            while (!queue.isQueueEmpty()) {
+                int node = queue.poll();
+
+                // Lazy update: contract only if the node is still the cheapest one
+                int priority = simulation.priority(node);
+                if (!queue.isQueueEmpty() && priority > queue.peekKey()) {
+                    queue.update(node, priority, -1, priority);
+                    continue;
+                }
+
+                contractNode(node, contraction);
+                ranks[node] = nextRank++;
+                detach(node);
+
+                int[] neighbors = upTargets[node];
+                for (int neighbor : neighbors) {
+                    int neighborPriority = simulation.priority(neighbor);
+                    queue.update(neighbor, neighborPriority, -1, neighborPriority);
+                }
+            }
+
+            return freeze();
+        }
+
+        private void contractNode(int node, Simulation contraction) {
+            contraction.findShortcuts(node, shortcutFrom, shortcutTo, shortcutWeight);
+            for (int i = 0; i < shortcutFrom.size(); i++) {
+                int from = shortcutFrom.get(i);
+                int to = shortcutTo.get(i);
+                putEdge(from, to, shortcutWeight.get(i), node);
+                putEdge(to, from, shortcutWeight.get(i), node);
+            }
+
+            // Everything still attached to node is ranked higher: these become its upward edges
+            int degree = degrees[node];
+            upTargets[node] = Arrays.copyOf(targets[node], degree);
+            upWeights[node] = Arrays.copyOf(weights[node], degree);
+            upMiddles[node] = Arrays.copyOf(middles[node], degree);
+        }
+
+        // Removes node from its neighbours' lists once it has been contracted
+        private void detach(int node) {
+            for (int i = 0; i < degrees[node]; i++) {
+                int neighbor = targets[node][i];
+                removeEdge(neighbor, node);
+                contractedNeighbors[neighbor]++;
+                levels[neighbor] = Math.max(levels[neighbor], levels[node] + 1);
+            }
+            degrees[node] = 0;
+            targets[node] = null;
+            weights[node] = null;
+            middles[node] = null;
+        }
+
+        // Adds or shortens the edge from -> to
+        private void putEdge(int from, int to, double weight, int middle) {
+            int[] row = targets[from];
+            int degree = degrees[from];
+            for (int i = 0; i < degree; i++) {
+                if (row[i] == to) {
+                    if (weight < weights[from][i]) {
+                        weights[from][i] = weight;
+                        middles[from][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degree == row.length) {
+                int capacity = degree + (degree >> 1) + 2;
+                targets[from] = row = Arrays.copyOf(row, capacity);
+                weights[from] = Arrays.copyOf(weights[from], capacity);
+                middles[from] = Arrays.copyOf(middles[from], capacity);
+            }
+            row[degree] = to;
+            weights[from][degree] = weight;
+            middles[from][degree] = middle;
+            degrees[from] = degree + 1;
+        }
+
+        private void removeEdge(int from, int to) {
+            int[] row = targets[from];
+            int last = degrees[from] - 1;
+            for (int i = 0; i <= last; i++) {
+                if (row[i] == to) {
+                    row[i] = row[last];
+                    weights[from][i] = weights[from][last];
+                    middles[from][i] = middles[from][last];
+                    degrees[from] = last;
+                    return;
+                }
+            }
+        }
+
+        private int priorityLimit() {
+            return Math.min(witnessSettleLimit, PRIORITY_SETTLE_LIMIT);
+        }
+
+        private ContractionHierarchy freeze() {
+            int[] offsets = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] = offsets[node] + upTargets[node].length;
+            }
+            int edgeCount = offsets[nodeCount];
+            int[] flatTargets = new int[edgeCount];
+            double[] flatWeights = new double[edgeCount];
+            int[] flatMiddles = new int[edgeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int length = upTargets[node].length;
+                System.arraycopy(upTargets[node], 0, flatTargets, offsets[node], length);
+                System.arraycopy(upWeights[node], 0, flatWeights, offsets[node], length);
+                System.arraycopy(upMiddles[node], 0, flatMiddles, offsets[node], length);
+                upTargets[node] = null;
+                upWeights[node] = null;
+                upMiddles[node] = null;
+            }
+            return new ContractionHierarchy(graph, ranks, offsets, flatTargets, flatWeights, flatMiddles);
+        }
+    }
+
+    /**
+     * Witness searches for one thread. Reads the builder's adjacency but
+     * never changes it.
+     */
+    private static final class Simulation {
+        private final Builder builder;
+        private final int settleLimit;
+        private final IntList from = new IntList(16);
+        private final IntList to = new IntList(16);
+        private final DoubleList weight = new DoubleList(16);
+
+        // Marks the neighbours a witness search still has to settle
+        private final int[] targetMarks;
+        private int mark;
+
+        Simulation(Builder builder, int settleLimit) {
+            this.builder = builder;
+            this.settleLimit = settleLimit;
+            this.targetMarks = new int[builder.nodeCount];
+        }
+
+        // Edge difference, weighted up, plus contracted neighbours and hierarchy depth to spread contraction evenly
+        int priority(int node) {
+            findShortcuts(node, from, to, weight);
+            return 2 * (from.size() - builder.degrees[node]) + builder.contractedNeighbors[node]
+                    + builder.levels[node];
+        }
+
+        void findShortcuts(int node, IntList shortcutFrom, IntList shortcutTo, DoubleList shortcutWeight) {
+            shortcutFrom.clear();
+            shortcutTo.clear();
+            shortcutWeight.clear();
+            int degree = builder.degrees[node];
+            int[] neighbors = builder.targets[node];
+            double[] distances = builder.weights[node];
+
+            for (int i = 0; i + 1 < degree; i++) {
+                int source = neighbors[i];
+                double viaSource = distances[i];
+
+                // Only pairs (i, j > i) are checked from this source, so only they bound the search
+                double maxOut = 0.0;
+                mark++;
+                for (int j = i + 1; j < degree; j++) {
+                    maxOut = Math.max(maxOut, distances[j]);
+                    targetMarks[neighbors[j]] = mark;
+                }
+                SearchContext context = witnessSearch(source, node, viaSource + maxOut, degree - i - 1);
+
+                for (int j = i + 1; j < degree; j++) {
+                    double viaNode = viaSource + distances[j];
+                    if (context.distance(neighbors[j]) > viaNode) {
+                        shortcutFrom.add(source);
+                        shortcutTo.add(neighbors[j]);
+                        shortcutWeight.add(viaNode);
+                    }
+                }
+            }
+        }
+
+        // Bounded Dijkstra from source that may not pass through the node being contracted
+        private SearchContext witnessSearch(int source, int excluded, double limit, int targetCount) {
+            SearchContext context = SearchContext.forThread(builder.nodeCount);
+            context.update(source, 0.0, -1, 0.0);
+            int settled = 0;
+
+            while (!context.isQueueEmpty() && context.peekKey() <= limit
+                    && settled < settleLimit) {
+                int current = context.poll();
+                settled++;
+                if (targetMarks[current] == mark && --targetCount == 0) {
+                    break; // Every remaining neighbour has its exact distance
+                }
+                double currentDistance = context.distance(current);
+                int[] row = builder.targets[current];
+                double[] rowWeights = builder.weights[current];
+
+                for (int i = 0, degree = builder.degrees[current]; i < degree; i++) {
+                    int neighbor = row[i];
+                    if (neighbor == excluded) {
+                        continue;
+                    }
+                    double newDistance = currentDistance + rowWeights[i];
+                    if (newDistance < context.distance(neighbor)) {
+                        context.update(neighbor, newDistance, current, newDistance);
+                    }
+                }
+            }
+            return context;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Dense source x target matrix of shortest distances, and optionally of
+ * estimated arrival times along those shortest paths. Each source is one
+ * Dijkstra expansion that stops once every target is settled; sources run
+ * in parallel.
+ */
+public final class DistanceMatrix {
+    private final int sourceCount;
+    private final int targetCount;
+    private final double[] distances;
+    private final double[] arrivalTimes;
+
+    private DistanceMatrix(int sourceCount, int targetCount, double[] distances, double[] arrivalTimes) {
+        this.sourceCount = sourceCount;
+        this.targetCount = targetCount;
+        this.distances = distances;
+        this.arrivalTimes = arrivalTimes;
+    }
+
+    /**
+     * Computes the matrix for the given node ids. A negative id stands for
+     * an unknown location and yields a row or column of infinity. Fails
+     * with IllegalArgumentException when the matrix has more than
+     * Integer.MAX_VALUE entries.
+     */
+    public static DistanceMatrix compute(RoutingGraph graph, int[] sources, int[] targets,
+                                         boolean includeArrivalTimes) {
+        return compute(graph, sources, targets, includeArrivalTimes, null);
+    }
+
+    /**
+     * Like the public overload, but takes the rows' search contexts from
+     * contexts rather than from the threads running them, for callers on
+     * short-lived threads. A null pool means thread-local contexts.
+     */
+    static DistanceMatrix compute(RoutingGraph graph, int[] sources, int[] targets, boolean includeArrivalTimes,
+                                  SearchContextPool contexts) {
+        int nodeCount = graph.getNodeCount();
+        int targetCount = targets.length;
+        int size;
+        try {
+            size = Math.multiplyExact(sources.length, targetCount);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Matrix too large: " + sources.length + " x " + targetCount);
+        }
+        double[] distances = new double[size];
+        double[] arrivalTimes = includeArrivalTimes ? new double[size] : null;
+
+        IntStream.range(0, sources.length).parallel().forEach(row -> {
+            int offset = row * targetCount;
+            int source = sources[row];
+            if (source < 0) {
+                Arrays.fill(distances, offset, offset + targetCount, Double.POSITIVE_INFINITY);
+                if (arrivalTimes != null) {
+                    Arrays.fill(arrivalTimes, offset, offset + targetCount, Double.POSITIVE_INFINITY);
+                }
+                return;
+            }
+
+            // Targets and travel times live in the context, so a row allocates nothing
+            SearchContext context = contexts == null ? SearchContext.forThread(nodeCount)
+                    : contexts.acquire(nodeCount);
+            try {
+                double[] times = arrivalTimes == null ? null : context.values();
+                expand(graph, source, targets, context, times);
+
+                for (int column = 0; column < targetCount; column++) {
+                    int target = targets[column];
+                    boolean reached = target >= 0 && context.isSettled(target);
+                    distances[offset + column] = reached ? context.distance(target) : Double.POSITIVE_INFINITY;
+                    if (arrivalTimes != null) {
+                        arrivalTimes[offset + column] = reached ? times[target] : Double.POSITIVE_INFINITY;
+                    }
+                }
+            } finally {
+                if (contexts != null) {
+                    contexts.release(context);
+                }
+            }
+        });
+
+        return new DistanceMatrix(sources.length, targetCount, distances, arrivalTimes);
+    }
+
+    /**
+     * Dijkstra from source until every target is settled. Parents are
+     * always settled before their children, so when times is given the
+     * per-edge travel times of calculateEstimatedArrivalTime are summed
+     * along the shortest-path tree as nodes settle.
+     */
+    private static void expand(RoutingGraph graph, int source, int[] targets, SearchContext context,
+                               double[] times) {
+        int remaining = 0;
+        for (int target : targets) {
+            if (target >= 0 && context.mark(target)) {
+                remaining++;
+            }
+        }
+        context.update(source, 0.0, -1, 0.0);
+
+        while (!context.isQueueEmpty() && remaining > 0) {
+            int current = context.poll();
+            if (context.isMarked(current)) {
+                remaining--;
+            }
+            if (times != null) {
+                int parent = context.parent(current);
+                times[current] = parent < 0 ? 0.0
+                        : times[parent] + CampusMap.estimateEdgeTravelTime(graph.distance(parent, current));
+            }
+
+            double currentDistance = context.distance(current);
+            for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                int neighbor = graph.neighbor(current, i);
+                double newDistance = currentDistance + graph.weight(current, i);
+                if (newDistance < context.distance(neighbor)) {
+                    context.update(neighbor, newDistance, current, newDistance);
+                }
+            }
+        }
+    }
+
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    public int getTargetCount() {
+        return targetCount;
+    }
+
+    public double getDistance(int source, int target) {
+        return distances[source * targetCount + target];
+    }
+
+    public boolean hasArrivalTimes() {
+        return arrivalTimes != null;
+    }
+
+    public double getArrivalTime(int source, int target) {
+        if (arrivalTimes == null) {
+            throw new IllegalStateException("Matrix was computed without arrival times");
+        }
+        return arrivalTimes[source * targetCount + target];
+    }
+
+    /**
+     * Row-major backing array, sourceCount * targetCount entries.
+     */
+    public double[] getDistances() {
+        return distances;
+    }
+
+    public double[] getArrivalTimes() {
+        return arrivalTimes;
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.Arrays;
+
+/**
+ * Growable double array, the primitive counterpart of List<Double>.
+ */
+final class DoubleList {
+    private double[] values;
+    private int size;
+
+    DoubleList(int initialCapacity) {
+        values = new double[Math.max(initialCapacity, 4)];
+    }
+
+    void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    double get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
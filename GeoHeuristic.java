@@ -0,0 +1,103 @@
+/**
+ * Haversine distance between a node and the target, scaled so it never
+ * exceeds the edge distances actually given to addDistance.
+ */
+public final class GeoHeuristic implements Heuristic {
+    // Keeps rounding in the haversine formula from breaking the bound
+    private static final double SAFETY_FACTOR = 1.0 - 1e-9;
+
+    private final RoutingGraph graph;
+    private final double scale;
+
+    private GeoHeuristic(RoutingGraph graph, double scale) {
+        this.graph = graph;
+        this.scale = scale;
+    }
+
+    /**
+     * Checks every edge against the straight-line distance between its end
+     * points. If some edge is shorter than that (hand-entered distances,
+     * shortcuts, bad coordinates) the heuristic is scaled down by the worst
+     * ratio found, which keeps it admissible and consistent.
+     */
+    public static GeoHeuristic validate(RoutingGraph graph) {
+        double scale = 1.0;
+
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            double latitude = graph.getLatitude(node);
+            double longitude = graph.getLongitude(node);
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                return new GeoHeuristic(graph, 0.0); // No usable coordinates, fall back to Dijkstra
+            }
+
+            for (int i = 0, degree = graph.degree(node); i < degree; i++) {
+                int neighbor = graph.neighbor(node, i);
+                double straightLine = GeoMath.haversine(latitude, longitude,
+                        graph.getLatitude(neighbor), graph.getLongitude(neighbor));
+
+                if (!(straightLine > 0.0)) {
+                    continue; // Same coordinates or missing ones; no constraint
+                }
+                double ratio = graph.weight(node, i) / straightLine;
+                if (ratio < scale) {
+                    scale = Math.max(0.0, ratio);
+                }
+            }
+        }
+
+        return new GeoHeuristic(graph, scale * SAFETY_FACTOR);
+    }
+
+    /**
+     * The heuristic for graph, which is this heuristic's graph plus the
+     * changed edges, given as (source, destination) pairs, and the
+     * locations from firstAddedNode on. Only new or changed edges can
+     * lower the scale, so only they are checked. Lengthened and removed
+     * edges leave the old scale admissible, if no longer the tightest.
+     */
+    GeoHeuristic update(RoutingGraph graph, int[] changedEdges, int firstAddedNode) {
+        for (int node = firstAddedNode; node < graph.getNodeCount(); node++) {
+            if (Double.isNaN(graph.getLatitude(node)) || Double.isNaN(graph.getLongitude(node))) {
+                return new GeoHeuristic(graph, 0.0);
+            }
+        }
+
+        double updated = scale;
+        for (int i = 0; i < changedEdges.length && updated > 0.0; i += 2) {
+            int node = changedEdges[i];
+            int neighbor = changedEdges[i + 1];
+            double straightLine = GeoMath.haversine(graph.getLatitude(node), graph.getLongitude(node),
+                    graph.getLatitude(neighbor), graph.getLongitude(neighbor));
+            double ratio = graph.distance(node, neighbor) / straightLine * SAFETY_FACTOR;
+            if (straightLine > 0.0 && ratio < updated) {
+                updated = Math.max(0.0, ratio);
+            }
+        }
+        return new GeoHeuristic(graph, updated);
+    }
+
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * 1.0 when the plain haversine distance is admissible, smaller when the
+     * edge data forced a fallback.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    public boolean isScaled() {
+        return scale < SAFETY_FACTOR;
+    }
+
+    @Override
+    public double estimate(int node, int target) {
+        if (scale == 0.0) {
+            return 0.0;
+        }
+        return scale * GeoMath.haversine(graph.getLatitude(node), graph.getLongitude(node),
+                graph.getLatitude(target), graph.getLongitude(target));
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Great-circle helpers shared by the routing heuristics and spatial lookups.
+ */
+public final class GeoMath {
+    // Mean Earth radius in meters
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private GeoMath() {
+    }
+
+    public static double haversine(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfPhi = Math.sin((phi2 - phi1) * 0.5);
+        double sinHalfLambda = Math.sin(Math.toRadians(longitude2 - longitude1) * 0.5);
+        double h = sinHalfPhi * sinHalfPhi + Math.cos(phi1) * Math.cos(phi2) * sinHalfLambda * sinHalfLambda;
+        return 2.0 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+}
@@ -0,0 +1,478 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams locations and paths from files into a CampusMap as one update.
+ * CSV files are read in fixed-size chunks of lines; each chunk is parsed
+ * and resolved in parallel and then applied in file order, so memory is
+ * bounded by the chunk size plus the graph itself. Anything that cannot be
+ * applied is recorded in the returned {@link ImportReport}.
+ *
+ * <p>Like any {@link CampusMap#update}, an import that fails part-way still
+ * publishes what it applied, since holding a whole file back would undo
+ * the bounded memory. The failure is then an {@link ImportException}
+ * carrying the report of what went in, so the caller can decide whether
+ * to keep it or reload.
+ */
+public final class GraphImporter {
+    static final int DEFAULT_CHUNK_LINES = 1 << 16;
+
+    private final CampusMap campusMap;
+    private final int chunkLines;
+
+    public GraphImporter(CampusMap campusMap) {
+        this(campusMap, DEFAULT_CHUNK_LINES);
+    }
+
+    public GraphImporter(CampusMap campusMap, int chunkLines) {
+        if (chunkLines <= 0) {
+            throw new IllegalArgumentException("chunkLines must be positive: " + chunkLines);
+        }
+        this.campusMap = campusMap;
+        this.chunkLines = chunkLines;
+    }
+
+    /**
+     * Imports "name,latitude,longitude" records, then
+     * "source,destination,distance" records. Either file may be null, start
+     * with a header line, contain blank lines and # comments, and quote
+     * fields that contain commas.
+     */
+    public ImportReport importCsv(Path locationsFile, Path distancesFile) throws IOException {
+        ImportReport report = new ImportReport();
+        apply(report, changes -> {
+            if (locationsFile != null) {
+                try (BufferedReader reader = Files.newBufferedReader(locationsFile)) {
+                    readLocations(reader, locationsFile.getFileName().toString(), changes, report);
+                }
+            }
+            if (distancesFile != null) {
+                try (BufferedReader reader = Files.newBufferedReader(distancesFile)) {
+                    readDistances(reader, distancesFile.getFileName().toString(), changes, report);
+                }
+            }
+        });
+        return report;
+    }
+
+    /**
+     * Imports an OpenStreetMap XML extract. Every way tagged highway becomes
+     * a chain of paths between its consecutive nodes, measured along the
+     * great circle. Named nodes become locations under their name (with the
+     * OSM id appended if the name is taken); other nodes are added as
+     * "osm:&lt;id&gt;" once a way uses them. StAX parsing is sequential, and
+     * node coordinates are held in primitive arrays until the ways are read.
+     */
+    public ImportReport importOsm(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return importOsm(in, file.getFileName().toString());
+        }
+    }
+
+    public ImportReport importOsm(InputStream in, String sourceName) throws IOException {
+        ImportReport report = new ImportReport();
+        apply(report, changes -> {
+            XMLStreamReader reader = null;
+            try {
+                reader = newXmlInputFactory().createXMLStreamReader(in);
+                new OsmReader(sourceName, changes, report).read(reader);
+            } catch (XMLStreamException e) {
+                throw new IOException("Malformed OSM XML in " + sourceName + ": " + e.getMessage(), e);
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (XMLStreamException ignored) {
+                        // Nothing useful left to do with the stream
+                    }
+                }
+            }
+        });
+        return report;
+    }
+
+    private interface Import {
+        void run(GraphUpdate changes) throws IOException;
+    }
+
+    private void apply(ImportReport report, Import work) throws IOException {
+        try {
+            campusMap.update(changes -> {
+                try {
+                    work.run(changes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            IOException cause = e.getCause();
+            throw new ImportException(cause.getMessage() + "; published so far: " + report, cause, report);
+        }
+    }
+
+    private void readLocations(BufferedReader reader, String sourceName, GraphUpdate changes, ImportReport report)
+            throws IOException {
+        String[] lines = new String[chunkLines];
+        String[] names = new String[chunkLines];
+        double[] latitudes = new double[chunkLines];
+        double[] longitudes = new double[chunkLines];
+        String[] errors = new String[chunkLines];
+        long lineNumber = 0;
+
+        int count;
+        while ((count = readChunk(reader, lines, lineNumber == 0)) > 0) {
+            IntStream.range(0, count).parallel().forEach(i -> {
+                names[i] = null;
+                errors[i] = null;
+                String[] fields = splitCsv(lines[i]);
+                if (fields == null) {
+                    return;
+                }
+                if (fields.length != 3 || fields[0].isEmpty()) {
+                    errors[i] = "expected name,latitude,longitude";
+                    return;
+                }
+                try {
+                    latitudes[i] = Double.parseDouble(fields[1]);
+                    longitudes[i] = Double.parseDouble(fields[2]);
+                } catch (NumberFormatException e) {
+                    errors[i] = "invalid coordinates \"" + fields[1] + "," + fields[2] + "\"";
+                    return;
+                }
+                if (!(Math.abs(latitudes[i]) <= 90 && Math.abs(longitudes[i]) <= 180)) {
+                    errors[i] = "coordinates out of range";
+                    return;
+                }
+                names[i] = fields[0];
+            });
+
+            for (int i = 0; i < count; i++) {
+                if (errors[i] != null) {
+                    if (lineNumber + i > 0) { // An unparseable first line is a header
+                        report.malformed(sourceName + ":" + (lineNumber + i + 1), errors[i]);
+                    }
+                } else if (names[i] != null) {
+                    boolean duplicate = changes.idOf(names[i]) >= 0;
+                    changes.addLocation(names[i], latitudes[i], longitudes[i]);
+                    report.addLocation(duplicate);
+                    if (duplicate) {
+                        report.duplicateLocation(sourceName + ":" + (lineNumber + i + 1), names[i]);
+                    }
+                }
+            }
+            lineNumber += count;
+        }
+    }
+
+    private void readDistances(BufferedReader reader, String sourceName, GraphUpdate changes, ImportReport report)
+            throws IOException {
+        String[] lines = new String[chunkLines];
+        String[][] records = new String[chunkLines][];
+        int[] sourceIds = new int[chunkLines];
+        int[] destinationIds = new int[chunkLines];
+        double[] distances = new double[chunkLines];
+        String[] errors = new String[chunkLines];
+        long lineNumber = 0;
+
+        int count;
+        while ((count = readChunk(reader, lines, lineNumber == 0)) > 0) {
+            // No locations are added while paths are read, so the parallel id lookups are safe
+            IntStream.range(0, count).parallel().forEach(i -> {
+                errors[i] = null;
+                String[] fields = splitCsv(lines[i]);
+                records[i] = fields;
+                if (fields == null) {
+                    return;
+                }
+                if (fields.length != 3) {
+                    errors[i] = "expected source,destination,distance";
+                    return;
+                }
+                try {
+                    distances[i] = Double.parseDouble(fields[2]);
+                } catch (NumberFormatException e) {
+                    errors[i] = "invalid distance \"" + fields[2] + "\"";
+                    return;
+                }
+                if (!(distances[i] >= 0 && distances[i] < Double.POSITIVE_INFINITY)) {
+                    errors[i] = "distance must be finite and non-negative";
+                    return;
+                }
+                sourceIds[i] = changes.idOf(fields[0]);
+                destinationIds[i] = changes.idOf(fields[1]);
+            });
+
+            for (int i = 0; i < count; i++) {
+                String[] fields = records[i];
+                long line = lineNumber + i + 1;
+                if (errors[i] != null) {
+                    if (line > 1) {
+                        report.malformed(sourceName + ":" + line, errors[i]);
+                    }
+                } else if (fields != null) {
+                    if (sourceIds[i] < 0 || destinationIds[i] < 0) {
+                        if (sourceIds[i] < 0) {
+                            report.unresolvedEndpoint(sourceName + ":" + line, fields[0]);
+                        }
+                        if (destinationIds[i] < 0) {
+                            report.unresolvedEndpoint(sourceName + ":" + line, fields[1]);
+                        }
+                        continue;
+                    }
+                    boolean duplicate = !changes.addDistance(sourceIds[i], destinationIds[i], distances[i]);
+                    report.addEdge(duplicate);
+                    if (duplicate) {
+                        report.duplicateEdge(sourceName + ":" + line, fields[0], fields[1]);
+                    }
+                }
+            }
+            Arrays.fill(records, 0, count, null);
+            lineNumber += count;
+        }
+    }
+
+    // Fills lines from the reader; returns how many were read, 0 at the end
+    private static int readChunk(BufferedReader reader, String[] lines, boolean firstChunk) throws IOException {
+        int count = 0;
+        String line;
+        while (count < lines.length && (line = reader.readLine()) != null) {
+            if (firstChunk && count == 0 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            lines[count++] = line;
+        }
+        return count;
+    }
+
+    /**
+     * Splits one CSV line into trimmed fields. Double quotes protect commas
+     * and a doubled quote stands for itself. Returns null for blank lines
+     * and # comments.
+     */
+    static String[] splitCsv(String line) {
+        if (line.isBlank() || line.startsWith("#")) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static final class OsmReader {
+        private final String sourceName;
+        private final GraphUpdate changes;
+        private final ImportReport report;
+
+        // Every OSM node's coordinates, by position in the file
+        private final LongIntMap nodeIndex = new LongIntMap(1 << 12);
+        private final DoubleList latitudes = new DoubleList(1 << 12);
+        private final DoubleList longitudes = new DoubleList(1 << 12);
+        // OSM node id -> location id, for nodes already on the map
+        private final LongIntMap locationIds = new LongIntMap(1 << 12);
+
+        private long elementId;
+        private double latitude;
+        private double longitude;
+        private String nodeName;
+        private boolean highway;
+        private long[] wayNodes = new long[64];
+        private int wayLength;
+
+        OsmReader(String sourceName, GraphUpdate changes, ImportReport report) {
+            this.sourceName = sourceName;
+            this.changes = changes;
+            this.report = report;
+        }
+
+        void read(XMLStreamReader reader) throws XMLStreamException {
+            boolean inNode = false;
+            boolean inWay = false;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "node":
+                            inNode = startNode(reader);
+                            break;
+                        case "way":
+                            inWay = startWay(reader);
+                            break;
+                        case "nd":
+                            if (inWay) {
+                                addWayNode(reader);
+                            }
+                            break;
+                        case "tag":
+                            readTag(reader, inNode, inWay);
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (inNode && reader.getLocalName().equals("node")) {
+                        endNode();
+                        inNode = false;
+                    } else if (inWay && reader.getLocalName().equals("way")) {
+                        endWay();
+                        inWay = false;
+                    }
+                }
+            }
+        }
+
+        private boolean startNode(XMLStreamReader reader) {
+            nodeName = null;
+            try {
+                elementId = Long.parseLong(reader.getAttributeValue(null, "id"));
+                latitude = Double.parseDouble(reader.getAttributeValue(null, "lat"));
+                longitude = Double.parseDouble(reader.getAttributeValue(null, "lon"));
+                return true;
+            } catch (NullPointerException | NumberFormatException e) {
+                report.malformed(where(reader), "node without a valid id, lat and lon");
+                return false;
+            }
+        }
+
+        private void endNode() {
+            nodeIndex.put(elementId, latitudes.size());
+            latitudes.add(latitude);
+            longitudes.add(longitude);
+
+            if (nodeName != null) {
+                String name = nodeName;
+                boolean duplicate = changes.idOf(name) >= 0;
+                if (duplicate) {
+                    report.duplicateLocation(sourceName + " node " + elementId, name);
+                    name = name + " (osm:" + elementId + ")";
+                }
+                locationIds.put(elementId, changes.addLocation(name, latitude, longitude));
+                report.addLocation(duplicate);
+            }
+        }
+
+        private boolean startWay(XMLStreamReader reader) {
+            highway = false;
+            wayLength = 0;
+            try {
+                elementId = Long.parseLong(reader.getAttributeValue(null, "id"));
+                return true;
+            } catch (NumberFormatException e) {
+                report.malformed(where(reader), "way without a valid id");
+                return false;
+            }
+        }
+
+        private void addWayNode(XMLStreamReader reader) {
+            try {
+                long ref = Long.parseLong(reader.getAttributeValue(null, "ref"));
+                if (wayLength == wayNodes.length) {
+                    wayNodes = Arrays.copyOf(wayNodes, wayLength * 2);
+                }
+                wayNodes[wayLength++] = ref;
+            } catch (NumberFormatException e) {
+                report.malformed(where(reader), "nd without a valid ref");
+            }
+        }
+
+        private void readTag(XMLStreamReader reader, boolean inNode, boolean inWay) {
+            String key = reader.getAttributeValue(null, "k");
+            if (inNode && "name".equals(key)) {
+                nodeName = reader.getAttributeValue(null, "v");
+            } else if (inWay && "highway".equals(key)) {
+                highway = true;
+            }
+        }
+
+        private void endWay() {
+            if (!highway) {
+                return;
+            }
+            String where = sourceName + " way " + elementId;
+            int previous = -1;
+            for (int i = 0; i < wayLength; i++) {
+                int location = locationOf(wayNodes[i]);
+                if (location < 0) {
+                    report.unresolvedEndpoint(where, "osm:" + wayNodes[i]);
+                    previous = -1;
+                    continue;
+                }
+                if (previous >= 0 && previous != location) {
+                    double distance = GeoMath.haversine(
+                            latitudes.get(nodeIndex.get(wayNodes[i - 1])), longitudes.get(nodeIndex.get(wayNodes[i - 1])),
+                            latitudes.get(nodeIndex.get(wayNodes[i])), longitudes.get(nodeIndex.get(wayNodes[i])));
+                    boolean duplicate = !changes.addDistance(previous, location, distance);
+                    report.addEdge(duplicate);
+                    if (duplicate) {
+                        report.duplicateEdge(where, "osm:" + wayNodes[i - 1], "osm:" + wayNodes[i]);
+                    }
+                }
+                previous = location;
+            }
+        }
+
+        // Location id of an OSM node, adding it to the map on first use; -1 if the node was never seen
+        private int locationOf(long osmId) {
+            int location = locationIds.get(osmId);
+            if (location >= 0) {
+                return location;
+            }
+            int index = nodeIndex.get(osmId);
+            if (index < 0) {
+                return -1;
+            }
+            String name = "osm:" + osmId;
+            boolean duplicate = changes.idOf(name) >= 0;
+            location = changes.addLocation(name, latitudes.get(index), longitudes.get(index));
+            report.addLocation(duplicate);
+            locationIds.put(osmId, location);
+            return location;
+        }
+
+        private String where(XMLStreamReader reader) {
+            return sourceName + ":" + reader.getLocation().getLineNumber();
+        }
+    }
+}
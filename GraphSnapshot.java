@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, versioned view of a CampusMap. Readers grab the current
+ * snapshot without locking and keep using it while writers publish newer
+ * ones. Locations and adjacency rows are stored in fixed-size chunks; a
+ * publish only copies the top-level chunk tables, and later writes copy just
+ * the chunks and rows they touch, so consecutive snapshots share everything
+ * that did not change.
+ */
+public final class GraphSnapshot implements RoutingGraph {
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final long version;
+    private final int nodeCount;
+    private final long edgeCount;
+    private final long oneWayEdges;
+    private final CampusMap.Location[][] locations;
+    private final int[][][] neighborIds;
+    private final double[][][] neighborDistances;
+    private final int[][] degrees;
+    private final Map<String, Integer> ids; // Shared and append-only; ids >= nodeCount are not in this snapshot
+    // Graph file read for null chunks, or null
+    private final MappedBase base;
+
+    // Derived structures, built on first use and dropped together with the snapshot
+    private volatile GeoHeuristic geoHeuristic;
+    private volatile LandmarkTable landmarkTable;
+    private volatile ContractionHierarchy contractionHierarchy;
+    private volatile SpatialIndex spatialIndex;
+
+    GraphSnapshot(long version, int nodeCount, long edgeCount, long oneWayEdges, CampusMap.Location[][] locations,
+                  int[][][] neighborIds, double[][][] neighborDistances, int[][] degrees, Map<String, Integer> ids,
+                  MappedBase base) {
+        this.version = version;
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.oneWayEdges = oneWayEdges;
+        this.locations = locations;
+        this.neighborIds = neighborIds;
+        this.neighborDistances = neighborDistances;
+        this.degrees = degrees;
+        this.ids = ids;
+        this.base = base;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Whether every path has a path back of the same distance, as
+     * addDistance builds them. Location.addNeighbor adds one direction
+     * only; the contraction hierarchy, landmarks, shortest-path trees and
+     * alternative routes need symmetric paths, so CampusMap answers with
+     * Dijkstra instead while this is false.
+     */
+    public boolean isSymmetric() {
+        return oneWayEdges == 0;
+    }
+
+    public CampusMap.Location getLocation(int id) {
+        CampusMap.Location[] chunk = locations[id >>> CHUNK_SHIFT];
+        return chunk == null ? base.getLocation(id) : chunk[id & CHUNK_MASK];
+    }
+
+    public CampusMap.Location getLocation(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            int fileId = base == null ? -1 : base.getGraph().idOf(name);
+            return fileId < 0 ? null : getLocation(fileId);
+        }
+        return id >= nodeCount ? null : getLocation(id);
+    }
+
+    public List<String> getLocationNames() {
+        List<String> names = new ArrayList<>(nodeCount);
+        for (int id = 0; id < nodeCount; id++) {
+            names.add(getName(id));
+        }
+        return names;
+    }
+
+    // Chunks still in the graph file are null in every table
+
+    @Override
+    public int degree(int node) {
+        int[] chunk = degrees[node >>> CHUNK_SHIFT];
+        return chunk == null ? base.getGraph().degree(node) : chunk[node & CHUNK_MASK];
+    }
+
+    @Override
+    public int neighbor(int node, int index) {
+        int[][] chunk = neighborIds[node >>> CHUNK_SHIFT];
+        return chunk == null ? base.getGraph().neighbor(node, index) : chunk[node & CHUNK_MASK][index];
+    }
+
+    @Override
+    public double weight(int node, int index) {
+        double[][] chunk = neighborDistances[node >>> CHUNK_SHIFT];
+        return chunk == null ? base.getGraph().weight(node, index) : chunk[node & CHUNK_MASK][index];
+    }
+
+    @Override
+    public double distance(int source, int destination) {
+        int chunk = source >>> CHUNK_SHIFT;
+        if (degrees[chunk] == null) {
+            return base.getGraph().distance(source, destination);
+        }
+        int offset = source & CHUNK_MASK;
+        int degree = degrees[chunk][offset];
+        if (degree == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int index = Arrays.binarySearch(neighborIds[chunk][offset], 0, degree, destination);
+        return index >= 0 ? neighborDistances[chunk][offset][index] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public double getLatitude(int node) {
+        CampusMap.Location[] chunk = locations[node >>> CHUNK_SHIFT];
+        return chunk == null ? base.getGraph().getLatitude(node) : chunk[node & CHUNK_MASK].getLatitude();
+    }
+
+    @Override
+    public double getLongitude(int node) {
+        CampusMap.Location[] chunk = locations[node >>> CHUNK_SHIFT];
+        return chunk == null ? base.getGraph().getLongitude(node) : chunk[node & CHUNK_MASK].getLongitude();
+    }
+
+    @Override
+    public String getName(int node) {
+        CampusMap.Location[] chunk = locations[node >>> CHUNK_SHIFT];
+        return chunk == null ? base.getGraph().getName(node) : chunk[node & CHUNK_MASK].getName();
+    }
+
+    Map<CampusMap.Location, Double> neighborsOf(int node) {
+        Map<CampusMap.Location, Double> neighbors = new LinkedHashMap<>();
+        for (int i = 0, degree = degree(node); i < degree; i++) {
+            neighbors.put(getLocation(neighbor(node, i)), weight(node, i));
+        }
+        return Collections.unmodifiableMap(neighbors);
+    }
+
+    /**
+     * Takes over whatever the previous snapshot already built that is still
+     * valid after the changed edges, given as (source, destination) pairs or
+     * null when they were not tracked. Called before this snapshot is
+     * published. The geo heuristic survives anything but moved locations,
+     * the landmark table survives paths getting longer or removed, the
+     * spatial index survives anything but added or moved locations, and
+     * the contraction hierarchy only survives a publish that changed
+     * nothing. Everything else is rebuilt on first use.
+     */
+    void inheritFrom(GraphSnapshot previous, int[] changedEdges, boolean locationsMoved) {
+        if (changedEdges == null) {
+            return;
+        }
+        boolean locationsAdded = nodeCount != previous.nodeCount;
+        boolean shortened = false;
+        for (int i = 0; i < changedEdges.length && !shortened; i += 2) {
+            int source = changedEdges[i];
+            int destination = changedEdges[i + 1];
+            shortened = source >= previous.nodeCount || destination >= previous.nodeCount
+                    || distance(source, destination) < previous.distance(source, destination);
+        }
+
+        GeoHeuristic heuristic = previous.geoHeuristic;
+        if (heuristic != null && !locationsMoved) {
+            geoHeuristic = heuristic.update(this, changedEdges, previous.nodeCount);
+        }
+        LandmarkTable table = previous.landmarkTable;
+        if (table != null && !locationsAdded && !shortened) {
+            landmarkTable = table.withGraph(this);
+        }
+        if (!locationsAdded && !locationsMoved) {
+            spatialIndex = previous.spatialIndex;
+            if (changedEdges.length == 0) {
+                // Same graph under a new version; the hierarchy only reads the previous snapshot's unchanged contents
+                contractionHierarchy = previous.contractionHierarchy;
+            }
+        }
+    }
+
+    public GeoHeuristic getGeoHeuristic() {
+        GeoHeuristic heuristic = geoHeuristic;
+        if (heuristic == null) {
+            synchronized (this) {
+                heuristic = geoHeuristic;
+                if (heuristic == null) {
+                    heuristic = GeoHeuristic.validate(this);
+                    geoHeuristic = heuristic;
+                }
+            }
+        }
+        return heuristic;
+    }
+
+    public LandmarkTable getLandmarkTable() {
+        LandmarkTable table = landmarkTable;
+        if (table == null) {
+            synchronized (this) {
+                table = landmarkTable;
+                if (table == null) {
+                    table = LandmarkTable.build(this, CampusMap.DEFAULT_LANDMARK_COUNT);
+                    landmarkTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    void setLandmarkTable(LandmarkTable table) {
+        if (table.getGraph() != this) {
+            throw new IllegalArgumentException("Landmark table belongs to another snapshot");
+        }
+        landmarkTable = table;
+    }
+
+    public ContractionHierarchy getContractionHierarchy() {
+        ContractionHierarchy hierarchy = contractionHierarchy;
+        if (hierarchy == null) {
+            synchronized (this) {
+                hierarchy = contractionHierarchy;
+                if (hierarchy == null) {
+                    hierarchy = ContractionHierarchy.build(this);
+                    contractionHierarchy = hierarchy;
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        SpatialIndex index = spatialIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = spatialIndex;
+                if (index == null) {
+                    index = SpatialIndex.build(this);
+                    spatialIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    void setContractionHierarchy(ContractionHierarchy hierarchy) {
+        if (hierarchy.getGraph() != this) {
+            throw new IllegalArgumentException("Contraction hierarchy belongs to another snapshot");
+        }
+        contractionHierarchy = hierarchy;
+    }
+}
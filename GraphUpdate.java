@@ -0,0 +1,36 @@
+/**
+ * Changes collected by {@link CampusMap#update} and published together.
+ */
+public interface GraphUpdate {
+
+    // Returns the location's id; an existing location keeps its id and is moved
+    int addLocation(String name, double latitude, double longitude);
+
+    void addDistance(String source, String destination, double distance);
+
+    // Id of the named location as of this update, or -1
+    int idOf(String name);
+
+    /**
+     * Adds the path between two location ids in both directions. Returns
+     * false when it already existed; its distance is then overwritten.
+     */
+    boolean addDistance(int sourceId, int destinationId, double distance);
+
+    // Returns false when either location or the path between them does not exist
+    boolean updateDistance(String source, String destination, double distance);
+
+    /**
+     * Changes the distance of an existing path in both directions. Returns
+     * false, changing nothing, when there is no such path.
+     */
+    boolean updateDistance(int sourceId, int destinationId, double distance);
+
+    boolean removeDistance(String source, String destination);
+
+    /**
+     * Removes the path between two location ids in both directions.
+     * Returns false when there was no such path.
+     */
+    boolean removeDistance(int sourceId, int destinationId);
+}
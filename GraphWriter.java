@@ -0,0 +1,306 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-writer side of the snapshot model. Keeps the same chunked layout as
+ * {@link GraphSnapshot} and tracks which chunks and rows were copied since
+ * the last publish: those are private to the writer and are edited in place,
+ * everything else is shared with a published snapshot and is copied before
+ * the first write. Callers must hold the owning CampusMap's write lock.
+ */
+final class GraphWriter {
+    // Past this many changed edges in one publish, listing them costs more than recomputing from scratch
+    private static final int MAX_TRACKED_EDGES = 1 << 16;
+
+    private final CampusMap owner;
+    // Graph file underneath the chunks, or null; a null chunk below its node count is read from it
+    private final MappedBase base;
+    // Names added since the file was mapped
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // Bumped on every publish, which hands all current chunks and rows over to readers
+    private int epoch = 1;
+    private long version;
+    private int nodeCount;
+    private long edgeCount;
+    // Edges whose reverse is missing or has another distance; see GraphSnapshot.isSymmetric
+    private long oneWayEdges;
+
+    private CampusMap.Location[][] locations = new CampusMap.Location[4][];
+    private int[][][] neighborIds = new int[4][][];
+    private double[][][] neighborDistances = new double[4][][];
+    private int[][] degrees = new int[4][];
+    private int[] chunkEpochs = new int[4];
+    private int[][] rowEpochs = new int[4][];
+
+    // Directed edges added, removed or reweighted since the last publish, as (source, destination)
+    // pairs; null once there are too many to track
+    private IntList changedEdges = new IntList(16);
+    // Whether an existing location got new coordinates since the last publish
+    private boolean locationsMoved;
+
+    GraphWriter(CampusMap owner, MappedGraph file) {
+        this.owner = owner;
+        if (file == null) {
+            base = null;
+            return;
+        }
+        base = new MappedBase(file, owner);
+        nodeCount = file.getNodeCount();
+        edgeCount = file.getEdgeCount();
+        oneWayEdges = file.getOneWayEdgeCount();
+        int chunkCount = (nodeCount + GraphSnapshot.CHUNK_SIZE - 1) >>> GraphSnapshot.CHUNK_SHIFT;
+        int capacity = Math.max(4, chunkCount);
+        locations = new CampusMap.Location[capacity][];
+        neighborIds = new int[capacity][][];
+        neighborDistances = new double[capacity][][];
+        degrees = new int[capacity][];
+        chunkEpochs = new int[capacity];
+        rowEpochs = new int[capacity][];
+    }
+
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        return base == null ? -1 : base.getGraph().idOf(name);
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Adds a location, or moves an existing one while keeping its paths.
+     */
+    int addLocation(String name, double latitude, double longitude) {
+        int id = idOf(name);
+        boolean added = id < 0;
+        if (added) {
+            id = nodeCount;
+            ensureChunk(id >>> GraphSnapshot.CHUNK_SHIFT);
+        }
+
+        int chunk = ownChunk(id >>> GraphSnapshot.CHUNK_SHIFT);
+        CampusMap.Location previous = locations[chunk][id & GraphSnapshot.CHUNK_MASK];
+        locations[chunk][id & GraphSnapshot.CHUNK_MASK] = new CampusMap.Location(name, latitude, longitude, owner, id);
+        if (added) {
+            ids.put(name, id);
+            nodeCount++;
+        } else if (Double.compare(previous.getLatitude(), latitude) != 0
+                || Double.compare(previous.getLongitude(), longitude) != 0) {
+            locationsMoved = true;
+        }
+        return id;
+    }
+
+    /**
+     * Adds the directed edge source -> destination, or overwrites its
+     * distance. Returns true when the edge is new.
+     */
+    boolean putNeighbor(int sourceId, int destinationId, double distance) {
+        int oneWayBefore = oneWay(sourceId, destinationId);
+        boolean added = insertNeighbor(sourceId, destinationId, distance);
+        oneWayEdges += oneWay(sourceId, destinationId) - oneWayBefore;
+        return added;
+    }
+
+    private boolean insertNeighbor(int sourceId, int destinationId, double distance) {
+        int chunk = ownChunk(sourceId >>> GraphSnapshot.CHUNK_SHIFT);
+        int offset = sourceId & GraphSnapshot.CHUNK_MASK;
+        int degree = degrees[chunk][offset];
+        int[] row = neighborIds[chunk][offset];
+
+        int index = row == null ? -1 : Arrays.binarySearch(row, 0, degree, destinationId);
+        if (index >= 0) {
+            if (neighborDistances[chunk][offset][index] != distance) {
+                ownRow(chunk, offset, degree)[index] = distance; // Same pair again, the latest distance wins
+                edgeChanged(sourceId, destinationId);
+            }
+            return false;
+        }
+
+        int insertAt = -index - 1;
+        double[] distances = ownRow(chunk, offset, degree + 1);
+        row = neighborIds[chunk][offset];
+        System.arraycopy(row, insertAt, row, insertAt + 1, degree - insertAt);
+        System.arraycopy(distances, insertAt, distances, insertAt + 1, degree - insertAt);
+        row[insertAt] = destinationId;
+        distances[insertAt] = distance;
+        degrees[chunk][offset] = degree + 1;
+        edgeCount++;
+        edgeChanged(sourceId, destinationId);
+        return true;
+    }
+
+    boolean containsNeighbor(int sourceId, int destinationId) {
+        return distance(sourceId, destinationId) != Double.POSITIVE_INFINITY;
+    }
+
+    private double distance(int sourceId, int destinationId) {
+        int chunk = sourceId >>> GraphSnapshot.CHUNK_SHIFT;
+        int offset = sourceId & GraphSnapshot.CHUNK_MASK;
+        if (locations[chunk] == null) {
+            return base.getGraph().distance(sourceId, destinationId);
+        }
+        int[] row = neighborIds[chunk][offset];
+        int index = row == null ? -1 : Arrays.binarySearch(row, 0, degrees[chunk][offset], destinationId);
+        return index < 0 ? Double.POSITIVE_INFINITY : neighborDistances[chunk][offset][index];
+    }
+
+    // How many of the two edges between a pair of locations have no matching edge back
+    private int oneWay(int first, int second) {
+        double there = distance(first, second);
+        double back = distance(second, first);
+        if (there == back) {
+            return 0;
+        }
+        return (there == Double.POSITIVE_INFINITY || back == Double.POSITIVE_INFINITY) ? 1 : 2;
+    }
+
+    /**
+     * Removes the directed edge source -> destination. Returns false when
+     * there was no such edge.
+     */
+    boolean removeNeighbor(int sourceId, int destinationId) {
+        if (!containsNeighbor(sourceId, destinationId)) {
+            return false;
+        }
+        int oneWayBefore = oneWay(sourceId, destinationId);
+        int chunk = ownChunk(sourceId >>> GraphSnapshot.CHUNK_SHIFT);
+        int offset = sourceId & GraphSnapshot.CHUNK_MASK;
+        int degree = degrees[chunk][offset];
+        int[] row = neighborIds[chunk][offset];
+        int index = Arrays.binarySearch(row, 0, degree, destinationId);
+
+        double[] distances = ownRow(chunk, offset, degree);
+        row = neighborIds[chunk][offset];
+        System.arraycopy(row, index + 1, row, index, degree - index - 1);
+        System.arraycopy(distances, index + 1, distances, index, degree - index - 1);
+        degrees[chunk][offset] = degree - 1;
+        edgeCount--;
+        oneWayEdges += oneWay(sourceId, destinationId) - oneWayBefore;
+        edgeChanged(sourceId, destinationId);
+        return true;
+    }
+
+    private void edgeChanged(int sourceId, int destinationId) {
+        if (changedEdges != null) {
+            if (changedEdges.size() >= 2 * MAX_TRACKED_EDGES) {
+                changedEdges = null;
+            } else {
+                changedEdges.add(sourceId);
+                changedEdges.add(destinationId);
+            }
+        }
+    }
+
+    /**
+     * Edges changed since the last call, as (source, destination) pairs, or
+     * null when there were too many to track.
+     */
+    int[] takeChangedEdges() {
+        int[] edges = changedEdges == null ? null : changedEdges.toArray();
+        changedEdges = new IntList(16);
+        return edges;
+    }
+
+    // Whether a location moved since the last call
+    boolean takeLocationsMoved() {
+        boolean moved = locationsMoved;
+        locationsMoved = false;
+        return moved;
+    }
+
+    /**
+     * Freezes the current state into a snapshot. Only the top-level chunk
+     * tables are copied; the chunks themselves become shared.
+     */
+    GraphSnapshot publish() {
+        int chunkCount = (nodeCount + GraphSnapshot.CHUNK_SIZE - 1) >>> GraphSnapshot.CHUNK_SHIFT;
+        GraphSnapshot snapshot = new GraphSnapshot(++version, nodeCount, edgeCount, oneWayEdges,
+                Arrays.copyOf(locations, chunkCount), Arrays.copyOf(neighborIds, chunkCount),
+                Arrays.copyOf(neighborDistances, chunkCount), Arrays.copyOf(degrees, chunkCount), ids, base);
+        epoch++;
+        return snapshot;
+    }
+
+    private void ensureChunk(int chunk) {
+        if (chunk >= locations.length) {
+            int capacity = Math.max(chunk + 1, locations.length * 2);
+            locations = Arrays.copyOf(locations, capacity);
+            neighborIds = Arrays.copyOf(neighborIds, capacity);
+            neighborDistances = Arrays.copyOf(neighborDistances, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+            chunkEpochs = Arrays.copyOf(chunkEpochs, capacity);
+            rowEpochs = Arrays.copyOf(rowEpochs, capacity);
+        }
+        if (locations[chunk] == null) {
+            newChunk(chunk);
+        }
+    }
+
+    // A fresh writer-owned chunk, holding a copy of the graph file's nodes if it has any there
+    private void newChunk(int chunk) {
+        locations[chunk] = new CampusMap.Location[GraphSnapshot.CHUNK_SIZE];
+        neighborIds[chunk] = new int[GraphSnapshot.CHUNK_SIZE][];
+        neighborDistances[chunk] = new double[GraphSnapshot.CHUNK_SIZE][];
+        degrees[chunk] = new int[GraphSnapshot.CHUNK_SIZE];
+        rowEpochs[chunk] = new int[GraphSnapshot.CHUNK_SIZE];
+        chunkEpochs[chunk] = epoch;
+
+        int first = chunk << GraphSnapshot.CHUNK_SHIFT;
+        int end = base == null ? first : Math.min(base.getNodeCount(), first + GraphSnapshot.CHUNK_SIZE);
+        for (int id = first; id < end; id++) {
+            int offset = id & GraphSnapshot.CHUNK_MASK;
+            locations[chunk][offset] = base.getLocation(id);
+            MappedGraph file = base.getGraph();
+            int degree = file.degree(id);
+            if (degree > 0) {
+                int[] row = new int[degree];
+                double[] distances = new double[degree];
+                for (int i = 0; i < degree; i++) {
+                    row[i] = file.neighbor(id, i);
+                    distances[i] = file.weight(id, i);
+                }
+                neighborIds[chunk][offset] = row;
+                neighborDistances[chunk][offset] = distances;
+                degrees[chunk][offset] = degree;
+                rowEpochs[chunk][offset] = epoch;
+            }
+        }
+    }
+
+    // Makes the chunk private to the writer, copying it if a snapshot or the graph file still holds it
+    private int ownChunk(int chunk) {
+        if (locations[chunk] == null) {
+            newChunk(chunk);
+        } else if (chunkEpochs[chunk] != epoch) {
+            locations[chunk] = locations[chunk].clone();
+            neighborIds[chunk] = neighborIds[chunk].clone();
+            neighborDistances[chunk] = neighborDistances[chunk].clone();
+            degrees[chunk] = degrees[chunk].clone();
+            chunkEpochs[chunk] = epoch;
+        }
+        return chunk;
+    }
+
+    // Makes the row private with room for capacity entries; returns its distance array
+    private double[] ownRow(int chunk, int offset, int capacity) {
+        int[] row = neighborIds[chunk][offset];
+        double[] distances = neighborDistances[chunk][offset];
+        boolean owned = rowEpochs[chunk][offset] == epoch && row != null;
+
+        if (!owned || capacity > row.length) {
+            int degree = degrees[chunk][offset];
+            int newCapacity = Math.max(capacity, owned ? degree + (degree >> 1) + 1 : capacity + 1);
+            neighborIds[chunk][offset] = row == null ? new int[newCapacity] : Arrays.copyOf(row, newCapacity);
+            distances = distances == null ? new double[newCapacity] : Arrays.copyOf(distances, newCapacity);
+            neighborDistances[chunk][offset] = distances;
+            rowEpochs[chunk][offset] = epoch;
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Lower bound on the remaining distance from a node to the search target.
+ * Implementations must never overestimate, and must be consistent
+ * (estimate(u) <= weight(u, v) + estimate(v) for every edge) so A* can stop
+ * as soon as the target is settled.
+ */
+public interface Heuristic {
+
+    double estimate(int node, int target);
+}
@@ -0,0 +1,24 @@
+import java.io.IOException;
+
+/**
+ * An import that failed part-way, for example on a read error or malformed
+ * XML. Everything applied before the failure has already been published,
+ * and the report says what that was.
+ */
+public final class ImportException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ImportReport report;
+
+    ImportException(String message, IOException cause, ImportReport report) {
+        super(message, cause);
+        this.report = report;
+    }
+
+    /**
+     * What was imported before the failure.
+     */
+    public ImportReport getReport() {
+        return report;
+    }
+}
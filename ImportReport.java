@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a {@link GraphImporter} run loaded and what it had to skip. Only the
+ * first {@value #MAX_PROBLEMS} problems are kept verbatim; the counters
+ * cover all of them.
+ */
+public final class ImportReport {
+    static final int MAX_PROBLEMS = 100;
+
+    private long locations;
+    private long duplicateLocations;
+    private long edges;
+    private long duplicateEdges;
+    private long unresolvedEndpoints;
+    private long malformedRecords;
+    private final List<String> problems = new ArrayList<>();
+
+    void addLocation(boolean duplicate) {
+        locations++;
+        if (duplicate) {
+            duplicateLocations++;
+        }
+    }
+
+    void addEdge(boolean duplicate) {
+        edges++;
+        if (duplicate) {
+            duplicateEdges++;
+        }
+    }
+
+    void duplicateLocation(String where, String name) {
+        problem(where + ": duplicate location \"" + name + "\"");
+    }
+
+    void duplicateEdge(String where, String source, String destination) {
+        problem(where + ": duplicate path " + source + " -> " + destination + ", keeping the later distance");
+    }
+
+    void unresolvedEndpoint(String where, String name) {
+        unresolvedEndpoints++;
+        problem(where + ": unknown location \"" + name + "\"");
+    }
+
+    void malformed(String where, String reason) {
+        malformedRecords++;
+        problem(where + ": " + reason);
+    }
+
+    private void problem(String message) {
+        if (problems.size() < MAX_PROBLEMS) {
+            problems.add(message);
+        }
+    }
+
+    /**
+     * Location records applied, including duplicates that moved an existing location.
+     */
+    public long getLocationCount() {
+        return locations;
+    }
+
+    public long getDuplicateLocationCount() {
+        return duplicateLocations;
+    }
+
+    /**
+     * Path records applied, including duplicates that overwrote a distance.
+     */
+    public long getEdgeCount() {
+        return edges;
+    }
+
+    public long getDuplicateEdgeCount() {
+        return duplicateEdges;
+    }
+
+    public long getUnresolvedEndpointCount() {
+        return unresolvedEndpoints;
+    }
+
+    public long getMalformedRecordCount() {
+        return malformedRecords;
+    }
+
+    public boolean hasProblems() {
+        return duplicateLocations + duplicateEdges + unresolvedEndpoints + malformedRecords > 0;
+    }
+
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    @Override
+    public String toString() {
+        return "Imported " + locations + " locations (" + duplicateLocations + " duplicates) and "
+                + edges + " paths (" + duplicateEdges + " duplicates); skipped " + unresolvedEndpoints
+                + " unresolved endpoints and " + malformedRecords + " malformed records";
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.Arrays;
+
+/**
+ * Growable int array, used where a List<Integer> would box every element.
+ */
+final class IntList {
+    private int[] values;
+    private int size;
+
+    IntList(int initialCapacity) {
+        values = new int[Math.max(initialCapacity, 4)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    void set(int index, int value) {
+        values[index] = value;
+    }
+
+    int removeLast() {
+        return values[--size];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * ALT (A*, landmarks, triangle inequality) preprocessing. Holds the exact
+ * distance from each of K landmarks to every node and turns them into the
+ * lower bound max over L of |d(L, target) - d(L, node)|.
+ * Distances are stored as floats, so every bound is reduced by the float
+ * rounding error to stay admissible. The graph is treated as undirected,
+ * which is what addDistance builds; CampusMap does not use the table on
+ * maps with one-way paths.
+ */
+public final class LandmarkTable implements Heuristic {
+    private static final int MAGIC = 0x414C5431; // "ALT1"
+    private static final int FORMAT_VERSION = 1;
+    // Two float roundings, each at most 2^-24 relative
+    private static final double ROUNDING_ERROR = 0x1.0p-23;
+    private static final int IO_CHUNK_FLOATS = 1 << 18;
+
+    private final RoutingGraph graph;
+    private final int[] landmarks;
+    private final float[][] distances;
+
+    private LandmarkTable(RoutingGraph graph, int[] landmarks, float[][] distances) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    public static LandmarkTable build(RoutingGraph graph, int landmarkCount) {
+        return build(graph, landmarkCount, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Selects landmarkCount landmarks and runs one full Dijkstra per landmark,
+     * in parallel on the given pool.
+     */
+    public static LandmarkTable build(RoutingGraph graph, int landmarkCount, ForkJoinPool pool) {
+        if (landmarkCount < 1) {
+            throw new IllegalArgumentException("landmarkCount must be at least 1");
+        }
+        int[] landmarks = selectFarthest(graph, Math.min(landmarkCount, graph.getNodeCount()));
+        float[][] distances = new float[landmarks.length][];
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(landmarks.length);
+        for (int i = 0; i < landmarks.length; i++) {
+            int index = i;
+            tasks.add(pool.submit(() -> {
+                distances[index] = distancesFrom(graph, landmarks[index]);
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        return new LandmarkTable(graph, landmarks, distances);
+    }
+
+    /**
+     * Farthest-point selection on coordinates: each new landmark is the node
+     * farthest from all landmarks picked so far, which spreads them around
+     * the edge of the map where their bounds are tightest. Uses a flat
+     * projection since only the ordering matters.
+     */
+    private static int[] selectFarthest(RoutingGraph graph, int landmarkCount) {
+        int nodeCount = graph.getNodeCount();
+        int[] landmarks = new int[landmarkCount];
+        if (landmarkCount == 0) {
+            return landmarks;
+        }
+        double[] nearest = new double[nodeCount];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+        // Start from the node farthest away from an arbitrary one
+        int next = farthestFrom(graph, 0, nearest, false);
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+        for (int i = 0; i < landmarkCount; i++) {
+            landmarks[i] = next;
+            next = farthestFrom(graph, next, nearest, true);
+        }
+        return landmarks;
+    }
+
+    // Updates nearest[] with the distance to origin and returns the node whose nearest landmark is farthest
+    private static int farthestFrom(RoutingGraph graph, int origin, double[] nearest, boolean keepMinimum) {
+        double originLatitude = graph.getLatitude(origin);
+        double originLongitude = graph.getLongitude(origin);
+        double cosLatitude = Math.cos(Math.toRadians(originLatitude));
+        int farthest = origin;
+        double farthestDistance = -1.0;
+
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            double dy = graph.getLatitude(node) - originLatitude;
+            double dx = (graph.getLongitude(node) - originLongitude) * cosLatitude;
+            double distance = dx * dx + dy * dy;
+            if (Double.isNaN(distance)) {
+                distance = 0.0; // Nodes without coordinates are never preferred
+            }
+            nearest[node] = keepMinimum ? Math.min(nearest[node], distance) : distance;
+            if (nearest[node] > farthestDistance) {
+                farthestDistance = nearest[node];
+                farthest = node;
+            }
+        }
+        return farthest;
+    }
+
+    // Runs as a pool task, possibly on a thread that is in the middle of its own search, so it
+    // must not touch the thread-local context
+    private static float[] distancesFrom(RoutingGraph graph, int landmark) {
+        SearchContext context = new SearchContext(graph.getNodeCount());
+        RoutingEngine.dijkstraAll(graph, landmark, context);
+
+        float[] row = new float[graph.getNodeCount()];
+        for (int node = 0; node < row.length; node++) {
+            row[node] = (float) context.distance(node);
+        }
+        return row;
+    }
+
+    /**
+     * The same landmark distances for another graph with the same
+     * locations. Only admissible if no path in graph is shorter than in
+     * this table's graph, as after lengthening or removing paths.
+     */
+    LandmarkTable withGraph(RoutingGraph graph) {
+        if (graph.getNodeCount() != this.graph.getNodeCount()) {
+            throw new IllegalArgumentException("Landmark table has " + this.graph.getNodeCount()
+                    + " locations, graph has " + graph.getNodeCount());
+        }
+        return new LandmarkTable(graph, landmarks, distances);
+    }
+
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    public int getLandmark(int index) {
+        return landmarks[index];
+    }
+
+    @Override
+    public double estimate(int node, int target) {
+        double best = 0.0;
+
+        for (float[] row : distances) {
+            double toTarget = row[target];
+            double toNode = row[node];
+
+            if (toTarget == Double.POSITIVE_INFINITY || toNode == Double.POSITIVE_INFINITY) {
+                if (toTarget != toNode) {
+                    return Double.POSITIVE_INFINITY; // Node and target lie in different components
+                }
+                continue; // Landmark reaches neither of them
+            }
+            double bound = Math.abs(toTarget - toNode) - (toTarget + toNode) * ROUNDING_ERROR;
+            if (bound > best) {
+                best = bound;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes the table to a file next to the target and renames it into
+     * place, so a concurrent load never reads a half-written table.
+     */
+    public void save(Path file) throws IOException {
+        Path temporary = MappedGraph.temporaryFileFor(file);
+        try {
+            write(temporary);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(24 + 4 * landmarks.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putInt(graph.getNodeCount());
+            header.putInt(landmarks.length);
+            header.putLong(fingerprint(graph));
+            for (int landmark : landmarks) {
+                header.putInt(landmark);
+            }
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(4 * IO_CHUNK_FLOATS).order(ByteOrder.LITTLE_ENDIAN);
+            for (float[] row : distances) {
+                for (int from = 0; from < row.length; from += IO_CHUNK_FLOATS) {
+                    int count = Math.min(IO_CHUNK_FLOATS, row.length - from);
+                    chunk.clear();
+                    chunk.asFloatBuffer().put(row, from, count);
+                    chunk.limit(4 * count);
+                    writeFully(channel, chunk);
+                }
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Loads a table written by {@link #save(Path)}. Fails if the file was
+     * built for a different graph, since stale distances would make the
+     * bounds inadmissible.
+     */
+    public static LandmarkTable load(Path file, RoutingGraph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a landmark table: " + file);
+            }
+            int nodeCount = header.getInt();
+            int landmarkCount = header.getInt();
+            long fingerprint = header.getLong();
+            if (nodeCount != graph.getNodeCount() || fingerprint != fingerprint(graph)) {
+                throw new IOException("Landmark table " + file + " was built for a different graph");
+            }
+            // Only an empty graph has no landmarks
+            if (landmarkCount < Math.min(1, nodeCount) || landmarkCount > nodeCount) {
+                throw new IOException("Corrupt landmark table " + file + ": " + landmarkCount + " landmarks for "
+                        + nodeCount + " nodes");
+            }
+            long expectedSize = 24 + 4L * landmarkCount + 4L * landmarkCount * nodeCount;
+            if (channel.size() < expectedSize) {
+                throw new IOException("Truncated landmark table " + file + ": " + channel.size() + " of "
+                        + expectedSize + " bytes");
+            }
+
+            ByteBuffer landmarkBytes = ByteBuffer.allocate(4 * landmarkCount).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, landmarkBytes);
+            landmarkBytes.flip();
+            int[] landmarks = new int[landmarkCount];
+            landmarkBytes.asIntBuffer().get(landmarks);
+            for (int landmark : landmarks) {
+                if (landmark < 0 || landmark >= nodeCount) {
+                    throw new IOException("Corrupt landmark table " + file + ": landmark " + landmark
+                            + " is not a node");
+                }
+            }
+
+            float[][] distances = new float[landmarkCount][nodeCount];
+            ByteBuffer chunk = ByteBuffer.allocateDirect(4 * IO_CHUNK_FLOATS).order(ByteOrder.LITTLE_ENDIAN);
+            for (float[] row : distances) {
+                for (int from = 0; from < nodeCount; from += IO_CHUNK_FLOATS) {
+                    int count = Math.min(IO_CHUNK_FLOATS, nodeCount - from);
+                    chunk.clear().limit(4 * count);
+                    readFully(channel, chunk);
+                    chunk.flip();
+                    FloatBuffer floats = chunk.asFloatBuffer();
+                    floats.get(row, from, count);
+                }
+            }
+            return new LandmarkTable(graph, landmarks, distances);
+        }
+    }
+
+    // Cheap hash of the topology and weights, used to reject tables built for another graph
+    static long fingerprint(RoutingGraph graph) {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + graph.getNodeCount();
+        hash = 31 * hash + graph.getEdgeCount();
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            hash = 31 * hash + graph.degree(node);
+            for (int i = 0, degree = graph.degree(node); i < degree; i++) {
+                hash = 31 * hash + graph.neighbor(node, i);
+                hash = 31 * hash + Double.doubleToLongBits(graph.weight(node, i));
+            }
+        }
+        return hash;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of landmark table");
+            }
+        }
+    }
+}
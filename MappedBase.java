@@ -0,0 +1,48 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A graph file mapped underneath a CampusMap. Snapshots and the writer
+ * read every chunk they have not copied from here, so a loaded map keeps
+ * its locations and paths in the page cache rather than on the heap until
+ * an update touches them. Location objects for the file's nodes are made
+ * on first use and shared by every snapshot, as the locations of an
+ * unchanged chunk always are.
+ */
+final class MappedBase {
+    private final MappedGraph graph;
+    private final CampusMap owner;
+    private final AtomicReferenceArray<AtomicReferenceArray<CampusMap.Location>> locations;
+
+    MappedBase(MappedGraph graph, CampusMap owner) {
+        this.graph = graph;
+        this.owner = owner;
+        int chunkCount = (graph.getNodeCount() + GraphSnapshot.CHUNK_SIZE - 1) >>> GraphSnapshot.CHUNK_SHIFT;
+        locations = new AtomicReferenceArray<>(chunkCount);
+    }
+
+    MappedGraph getGraph() {
+        return graph;
+    }
+
+    int getNodeCount() {
+        return graph.getNodeCount();
+    }
+
+    CampusMap.Location getLocation(int id) {
+        int chunk = id >>> GraphSnapshot.CHUNK_SHIFT;
+        AtomicReferenceArray<CampusMap.Location> chunkLocations = locations.get(chunk);
+        if (chunkLocations == null) {
+            locations.compareAndSet(chunk, null, new AtomicReferenceArray<>(GraphSnapshot.CHUNK_SIZE));
+            chunkLocations = locations.get(chunk);
+        }
+        int offset = id & GraphSnapshot.CHUNK_MASK;
+        CampusMap.Location location = chunkLocations.get(offset);
+        if (location == null) {
+            // Routes compare locations by identity, so every caller must get the same object
+            chunkLocations.compareAndSet(offset, null, new CampusMap.Location(graph.getName(id),
+                    graph.getLatitude(id), graph.getLongitude(id), owner, id));
+            location = chunkLocations.get(offset);
+        }
+        return location;
+    }
+}
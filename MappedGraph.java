@@ -0,0 +1,382 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only graph served straight from a memory-mapped file. Opening only
+ * maps the sections and checks the header, so startup does not depend on
+ * the graph size. The pages are shared through the OS page cache by every
+ * process that maps the same file.
+ *
+ * <p>File layout, little-endian, every section 8-byte aligned: a header
+ * with the section positions, CSR edge offsets, edge targets, edge weights,
+ * latitudes, longitudes, name offsets, UTF-8 name bytes, and node ids
+ * sorted by name bytes for lookups by name.
+ */
+public final class MappedGraph implements RoutingGraph {
+    private static final int MAGIC = 0x31474D43; // "CMG1"
+    private static final int FORMAT_VERSION = 2;
+    private static final int SECTION_COUNT = 8;
+    private static final int HEADER_BYTES = 24 + 16 * SECTION_COUNT;
+
+    private final int nodeCount;
+    private final long edgeCount;
+    private final int oneWayEdgeCount;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final DoubleBuffer weights;
+    private final DoubleBuffer latitudes;
+    private final DoubleBuffer longitudes;
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+    private final IntBuffer nameIndex;
+
+    private MappedGraph(int nodeCount, long edgeCount, int oneWayEdgeCount, ByteBuffer[] sections) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.oneWayEdgeCount = oneWayEdgeCount;
+        this.offsets = sections[0].asIntBuffer();
+        this.targets = sections[1].asIntBuffer();
+        this.weights = sections[2].asDoubleBuffer();
+        this.latitudes = sections[3].asDoubleBuffer();
+        this.longitudes = sections[4].asDoubleBuffer();
+        this.nameOffsets = sections[5].asIntBuffer();
+        this.names = sections[6];
+        this.nameIndex = sections[7].asIntBuffer();
+    }
+
+    /**
+     * Writes graph in the mapped format, replacing the file if it exists.
+     * The file is replaced in one atomic rename, so readers see either the
+     * old graph or the new one, and mappings of the old file stay valid.
+     */
+    public static void write(RoutingGraph graph, Path file) throws IOException {
+        int nodeCount = graph.getNodeCount();
+        long edgeCount = graph.getEdgeCount();
+        if (edgeCount > Integer.MAX_VALUE) {
+            throw new IOException("Too many edges for the graph file format: " + edgeCount);
+        }
+
+        byte[][] nameBytes = new byte[nodeCount][];
+        long nameByteCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            nameBytes[node] = graph.getName(node).getBytes(StandardCharsets.UTF_8);
+            nameByteCount += nameBytes[node].length;
+        }
+        if (nameByteCount > Integer.MAX_VALUE) {
+            throw new IOException("Location names too large for the graph file format: " + nameByteCount);
+        }
+
+        Integer[] sortedByName = new Integer[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            sortedByName[node] = node;
+        }
+        Arrays.sort(sortedByName, (a, b) -> Arrays.compareUnsigned(nameBytes[a], nameBytes[b]));
+        // Names are how a loaded map finds its locations, so each must lead to exactly one
+        for (int i = 1; i < nodeCount; i++) {
+            if (Arrays.equals(nameBytes[sortedByName[i - 1]], nameBytes[sortedByName[i]])) {
+                throw new IOException("Duplicate location name: " + graph.getName(sortedByName[i]));
+            }
+        }
+
+        long[] lengths = {
+                4L * (nodeCount + 1), 4L * edgeCount, 8L * edgeCount, 8L * nodeCount, 8L * nodeCount,
+                4L * (nodeCount + 1), nameByteCount, 4L * nodeCount};
+        long[] positions = layout(lengths);
+
+        // Other processes may have the old file mapped, and truncating it under them would fault their reads,
+        // so the new file is written next to it and renamed over it
+        Path temporary = temporaryFileFor(file);
+        try {
+            writeSections(graph, temporary, nameBytes, sortedByName, positions, lengths);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeSections(RoutingGraph graph, Path file, byte[][] nameBytes, Integer[] sortedByName,
+                                      long[] positions, long[] lengths) throws IOException {
+        int nodeCount = graph.getNodeCount();
+        long edgeCount = graph.getEdgeCount();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putInt(nodeCount);
+            header.putInt(0); // One-way edges, filled in below
+            header.putLong(edgeCount);
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                header.putLong(positions[section]);
+                header.putLong(lengths[section]);
+            }
+
+            ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                sections[section] = map(channel, FileChannel.MapMode.READ_WRITE, positions[section], lengths[section]);
+            }
+
+            int edge = 0;
+            int oneWayEdges = 0;
+            int nameOffset = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                sections[0].putInt(edge);
+                for (int i = 0, degree = graph.degree(node); i < degree; i++) {
+                    int neighbor = graph.neighbor(node, i);
+                    double weight = graph.weight(node, i);
+                    sections[1].putInt(neighbor);
+                    sections[2].putDouble(weight);
+                    if (graph.distance(neighbor, node) != weight) {
+                        oneWayEdges++;
+                    }
+                    edge++;
+                }
+                sections[3].putDouble(graph.getLatitude(node));
+                sections[4].putDouble(graph.getLongitude(node));
+                sections[5].putInt(nameOffset);
+                sections[6].put(nameBytes[node]);
+                nameOffset += nameBytes[node].length;
+                sections[7].putInt(sortedByName[node]);
+            }
+            sections[0].putInt(edge);
+            sections[5].putInt(nameOffset);
+            header.putInt(12, oneWayEdges);
+
+            // Trailing empty sections may start past the last written byte
+            long end = positions[SECTION_COUNT - 1] + lengths[SECTION_COUNT - 1];
+            if (channel.size() < end) {
+                channel.write(ByteBuffer.allocate((int) (end - channel.size())), channel.size());
+            }
+            for (ByteBuffer section : sections) {
+                ((MappedByteBuffer) section).force();
+            }
+            ((MappedByteBuffer) header).force();
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write(RoutingGraph, Path)}. The mapping
+     * stays valid after this returns; no graph data is copied onto the heap.
+     */
+    public static MappedGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("Not a graph file: " + file);
+            }
+
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a graph file: " + file);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported graph file version " + version + ": " + file);
+            }
+            int nodeCount = header.getInt();
+            int oneWayEdgeCount = header.getInt();
+            long edgeCount = header.getLong();
+            if (nodeCount < 0 || edgeCount < 0 || edgeCount > Integer.MAX_VALUE
+                    || oneWayEdgeCount < 0 || oneWayEdgeCount > edgeCount) {
+                throw new IOException("Corrupt graph file, " + nodeCount + " locations and " + edgeCount
+                        + " edges, " + oneWayEdgeCount + " of them one-way: " + file);
+            }
+
+            // Names are the only section whose length the counts don't determine
+            long[] expectedLengths = {
+                    4L * (nodeCount + 1), 4L * edgeCount, 8L * edgeCount, 8L * nodeCount, 8L * nodeCount,
+                    4L * (nodeCount + 1), -1, 4L * nodeCount};
+            ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                long position = header.getLong();
+                long length = header.getLong();
+                if (position < HEADER_BYTES || position > fileSize || length < 0 || length > fileSize - position) {
+                    throw new IOException("Corrupt graph file, section " + section + " out of bounds: " + file);
+                }
+                if (expectedLengths[section] >= 0 && length != expectedLengths[section]) {
+                    throw new IOException("Corrupt graph file, section " + section + " has " + length
+                            + " bytes instead of " + expectedLengths[section] + ": " + file);
+                }
+                sections[section] = map(channel, FileChannel.MapMode.READ_ONLY, position, length);
+            }
+
+            MappedGraph graph = new MappedGraph(nodeCount, edgeCount, oneWayEdgeCount, sections);
+            if (graph.offsets.get(0) != 0 || graph.offsets.get(nodeCount) != edgeCount
+                    || graph.nameOffsets.get(0) != 0 || graph.nameOffsets.get(nodeCount) != graph.names.limit()) {
+                throw new IOException("Corrupt graph file, inconsistent section sizes: " + file);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Unused name in the same directory as file, so the finished file can be
+     * renamed over it atomically. Created with the default permissions,
+     * unlike Files.createTempFile, so other users can still map the graph.
+     */
+    static Path temporaryFileFor(Path file) {
+        return file.toAbsolutePath().resolveSibling(
+                file.getFileName() + "." + ProcessHandle.current().pid() + "." + System.nanoTime() + ".tmp");
+    }
+
+    private static long[] layout(long[] lengths) {
+        long[] positions = new long[lengths.length];
+        long position = HEADER_BYTES;
+        for (int section = 0; section < lengths.length; section++) {
+            positions[section] = position;
+            position = (position + lengths[section] + 7) & ~7L;
+        }
+        return positions;
+    }
+
+    private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long length)
+            throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Graph file section too large to map: " + length + " bytes");
+        }
+        return channel.map(mode, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Edges with no edge back of the same distance, as counted when the
+     * file was written.
+     */
+    public int getOneWayEdgeCount() {
+        return oneWayEdgeCount;
+    }
+
+    @Override
+    public int degree(int node) {
+        return offsets.get(node + 1) - offsets.get(node);
+    }
+
+    @Override
+    public int neighbor(int node, int index) {
+        return targets.get(offsets.get(node) + index);
+    }
+
+    @Override
+    public double weight(int node, int index) {
+        return weights.get(offsets.get(node) + index);
+    }
+
+    @Override
+    public double distance(int source, int destination) {
+        // Rows are sorted by target id
+        int low = offsets.get(source);
+        int high = offsets.get(source + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int target = targets.get(middle);
+            if (target < destination) {
+                low = middle + 1;
+            } else if (target > destination) {
+                high = middle - 1;
+            } else {
+                return weights.get(middle);
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public double getLatitude(int node) {
+        return latitudes.get(node);
+    }
+
+    @Override
+    public double getLongitude(int node) {
+        return longitudes.get(node);
+    }
+
+    @Override
+    public String getName(int node) {
+        int from = nameOffsets.get(node);
+        byte[] bytes = new byte[nameOffsets.get(node + 1) - from];
+        names.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Node id of the named location, or -1. Binary search over the sorted
+     * name index, comparing encoded bytes in place.
+     */
+    public int idOf(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int node = nameIndex.get(middle);
+            int comparison = compareName(node, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    private int compareName(int node, byte[] key) {
+        int from = nameOffsets.get(node);
+        int length = nameOffsets.get(node + 1) - from;
+        for (int i = 0, common = Math.min(length, key.length); i < common; i++) {
+            int difference = Byte.toUnsignedInt(names.get(from + i)) - Byte.toUnsignedInt(key[i]);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Names along the shortest path, or null when either location is unknown
+     * or the destination cannot be reached.
+     */
+    public List<String> findShortestPath(String source, String destination) {
+        int sourceId = idOf(source);
+        int destinationId = idOf(destination);
+        if (sourceId < 0 || destinationId < 0) {
+            return null;
+        }
+
+        SearchContext context = SearchContext.forThread(nodeCount);
+        if (RoutingEngine.dijkstra(this, sourceId, destinationId, context) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        List<String> path = new ArrayList<>(RoutingEngine.pathLength(context, destinationId));
+        for (int node = destinationId; node != -1; node = context.parent(node)) {
+            path.add(getName(node));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+}
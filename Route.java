@@ -0,0 +1,54 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path together with its total distance and estimated arrival time, all
+ * taken from the same graph snapshot.
+ */
+public final class Route {
+    private final List<CampusMap.Location> path;
+    private final double totalDistance;
+    private final double estimatedArrivalTime;
+    private final long version;
+
+    Route(List<CampusMap.Location> path, double totalDistance, double estimatedArrivalTime, long version) {
+        this.path = Collections.unmodifiableList(path);
+        this.totalDistance = totalDistance;
+        this.estimatedArrivalTime = estimatedArrivalTime;
+        this.version = version;
+    }
+
+    /**
+     * Measures the path on the given snapshot with the same rules as
+     * calculateTotalDistance and calculateEstimatedArrivalTime.
+     */
+    static Route of(GraphSnapshot graph, List<CampusMap.Location> path) {
+        double totalDistance = 0.0;
+        double totalTravelTime = 0.0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            double distance = graph.distance(path.get(i).getId(), path.get(i + 1).getId());
+            totalDistance += distance;
+            totalTravelTime += CampusMap.estimateEdgeTravelTime(distance);
+        }
+        return new Route(path, totalDistance, totalTravelTime, graph.getVersion());
+    }
+
+    public List<CampusMap.Location> getPath() {
+        return path;
+    }
+
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public double getEstimatedArrivalTime() {
+        return estimatedArrivalTime;
+    }
+
+    /**
+     * Version of the snapshot the route was computed on.
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers concurrent route requests that share a source with one Dijkstra
+ * expansion, which stops once every requested destination is settled.
+ * Batches form without a timer: the first request for a source leads the
+ * batch, and while an expansion for the same source is still running the
+ * next batch stays open and collects everyone who arrives. An idle source
+ * is answered immediately, and a busy one is answered in as many
+ * expansions as it takes requests to arrive faster than they finish.
+ */
+public final class RouteBatcher {
+    private final CampusMap campusMap;
+    // Requests may each run on a fresh virtual thread, so thread-local contexts would never be reused
+    private final SearchContextPool contexts = new SearchContextPool(Runtime.getRuntime().availableProcessors());
+
+    // Guarded by this; at most one open and one running batch per source
+    private final Map<String, Batch> open = new HashMap<>();
+    private final Map<String, Batch> running = new HashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public RouteBatcher(CampusMap campusMap) {
+        this.campusMap = campusMap;
+    }
+
+    /**
+     * Shortest route on the snapshot current when the batch runs, or null
+     * when either location is unknown or there is no path. Blocks until
+     * the batch is done.
+     */
+    public Route route(String source, String destination) {
+        Batch batch;
+        boolean leader = false;
+        int index;
+        synchronized (this) {
+            batch = open.get(source);
+            if (batch == null) {
+                batch = new Batch(running.get(source));
+                open.put(source, batch);
+                leader = true;
+            }
+            index = batch.destinations.size();
+            batch.destinations.add(destination);
+        }
+        requests.increment();
+
+        if (leader) {
+            run(source, batch);
+        }
+        try {
+            return batch.routes.join()[index];
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private void run(String source, Batch batch) {
+        if (batch.previous != null) {
+            // The batch keeps collecting requests until the previous expansion is done
+            batch.previous.routes.exceptionally(failure -> null).join();
+            batch.previous = null; // Don't chain every batch since the source was last idle
+        }
+        synchronized (this) {
+            open.remove(source, batch);
+            running.put(source, batch);
+        }
+
+        try {
+            batch.routes.complete(expand(source, batch.destinations));
+        } catch (RuntimeException | Error e) {
+            batch.routes.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                running.remove(source, batch);
+            }
+            batches.increment();
+        }
+    }
+
+    private Route[] expand(String source, List<String> destinations) {
+        RoutingMetrics metrics = campusMap.getRoutingMetrics();
+        boolean timed = metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0L;
+        GraphSnapshot graph = campusMap.snapshot();
+        Route[] routes = new Route[destinations.size()];
+        CampusMap.Location sourceLocation = graph.getLocation(source);
+        if (sourceLocation == null) {
+            return routes;
+        }
+
+        int[] destinationIds = CampusMap.toIds(graph, destinations);
+        int[] targets = Arrays.stream(destinationIds).filter(id -> id >= 0).sorted().distinct().toArray();
+
+        SearchContext context = contexts.acquire(graph.getNodeCount());
+        try {
+            context.update(sourceLocation.getId(), 0.0, -1, 0.0);
+            int remaining = targets.length;
+            while (!context.isQueueEmpty() && remaining > 0) {
+                int current = context.poll();
+                if (Arrays.binarySearch(targets, current) >= 0) {
+                    remaining--;
+                }
+
+                double currentDistance = context.distance(current);
+                for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                    int neighbor = graph.neighbor(current, i);
+                    double newDistance = currentDistance + graph.weight(current, i);
+                    if (newDistance < context.distance(neighbor)) {
+                        context.update(neighbor, newDistance, current, newDistance);
+                    }
+                }
+            }
+
+            boolean found = false;
+            for (int i = 0; i < routes.length; i++) {
+                int destinationId = destinationIds[i];
+                if (destinationId >= 0 && context.isSettled(destinationId)) {
+                    routes[i] = Route.of(graph, CampusMap.toLocationPath(graph, context, destinationId));
+                    found = true;
+                }
+            }
+            if (timed) {
+                metrics.record(RoutingMetrics.BATCH, source, destinations.size() + " destinations",
+                        graph.getVersion(), System.nanoTime() - start, found, context);
+            }
+        } finally {
+            contexts.release(context);
+        }
+        return routes;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    // Expansions run; requests per batch is getRequestCount() / getBatchCount()
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    private static final class Batch {
+        private Batch previous;
+        private final List<String> destinations = new ArrayList<>();
+        private final CompletableFuture<Route[]> routes = new CompletableFuture<>();
+
+        Batch(Batch previous) {
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of routes keyed by (source, destination, strategy).
+ * Entries are evicted least-recently-used first once the cache is full, and
+ * expire after a fixed time to live. Every entry remembers the snapshot
+ * version it was computed on; the first lookup that sees a newer version
+ * drops the whole cache. Concurrent misses for the same key share a single
+ * computation.
+ */
+public final class RouteCache {
+    private final CampusMap campusMap;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long version;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RouteCache(CampusMap campusMap, int maxEntries, Duration timeToLive) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("timeToLive must be positive: " + timeToLive);
+        }
+        this.campusMap = campusMap;
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+    }
+
+    /**
+     * Returns the cached route, computing it on a miss. Returns null when one
+     * of the locations does not exist or the destination is unreachable. If
+     * the caller computing a route is cancelled, callers waiting for it
+     * start over instead of failing with it.
+     */
+    public Route get(String source, String destination, RoutingStrategy strategy) {
+        return get(null, new Key(source, destination, strategy));
+    }
+
+    /**
+     * Like {@link #get(String, String, RoutingStrategy)}, but answers on the
+     * given snapshot. Results for a snapshot older than the cache's are
+     * computed without being cached.
+     */
+    Route get(GraphSnapshot graph, String source, String destination, RoutingStrategy strategy) {
+        return get(Objects.requireNonNull(graph, "graph"), new Key(source, destination, strategy));
+    }
+
+    // A null pinned snapshot means the latest one, taken again on every retry
+    private Route get(GraphSnapshot pinned, Key key) {
+        while (true) {
+            GraphSnapshot graph = pinned != null ? pinned : campusMap.snapshot();
+            long now = System.nanoTime();
+
+            Entry entry;
+            boolean loading = false;
+            synchronized (entries) {
+                if (graph.getVersion() > version) {
+                    invalidations.add(entries.size());
+                    entries.clear();
+                    version = graph.getVersion();
+                } else if (graph.getVersion() < version) {
+                    // A writer published after this caller took its snapshot; don't cache stale results
+                    misses.increment();
+                    return compute(graph, key);
+                }
+
+                entry = entries.get(key);
+                if (entry != null && now - entry.createdNanos >= timeToLiveNanos) {
+                    entries.remove(key);
+                    evictions.increment();
+                    entry = null;
+                }
+                if (entry == null) {
+                    entry = new Entry(now);
+                    entries.put(key, entry);
+                    loading = true;
+                    evictOverflow();
+                }
+            }
+
+            if (!loading) {
+                try {
+                    Route route = entry.route.get();
+                    hits.increment();
+                    return route;
+                } catch (CancellationException e) {
+                    continue; // The computing caller was cancelled, which says nothing about this one
+                } catch (InterruptedException e) {
+                    // This caller was cancelled while waiting; the computation carries on for the others
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting for a route");
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                }
+            }
+
+            misses.increment();
+            try {
+                Route route = compute(graph, key);
+                entry.route.complete(route);
+                return route;
+            } catch (CancellationException e) {
+                synchronized (entries) {
+                    entries.remove(key, entry);
+                }
+                entry.route.cancel(false);
+                throw e;
+            } catch (RuntimeException | Error e) {
+                synchronized (entries) {
+                    entries.remove(key, entry);
+                }
+                entry.route.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    private Route compute(GraphSnapshot graph, Key key) {
+        return campusMap.findRoute(graph, key.source, key.destination, key.strategy);
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Duration getTimeToLive() {
+        return Duration.ofNanos(timeToLiveNanos);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Entries removed because the cache was full or they expired.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Entries dropped because the graph changed or {@link #clear()} was called.
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Counter values as name/value pairs, for metrics scrapers.
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("hits", getHitCount());
+        statistics.put("misses", getMissCount());
+        statistics.put("evictions", getEvictionCount());
+        statistics.put("invalidations", getInvalidationCount());
+        statistics.put("size", (long) size());
+        return statistics;
+    }
+
+    private static final class Key {
+        private final String source;
+        private final String destination;
+        private final RoutingStrategy strategy;
+        private final int hash;
+
+        Key(String source, String destination, RoutingStrategy strategy) {
+            this.source = Objects.requireNonNull(source, "source");
+            this.destination = Objects.requireNonNull(destination, "destination");
+            this.strategy = Objects.requireNonNull(strategy, "strategy");
+            this.hash = (source.hashCode() * 31 + destination.hashCode()) * 31 + strategy.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && strategy == key.strategy
+                    && source.equals(key.source) && destination.equals(key.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final long createdNanos;
+        private final CompletableFuture<Route> route = new CompletableFuture<>();
+
+        Entry(long createdNanos) {
+            this.createdNanos = createdNanos;
+        }
+    }
+}
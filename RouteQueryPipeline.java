@@ -0,0 +1,158 @@
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs route queries for an interactive client on a background thread and
+ * hands the results to a delivery executor, such as Platform::runLater for
+ * JavaFX. Only the latest query matters: submitting a different one
+ * interrupts the running search, which stops within a few thousand settled
+ * nodes, and results of superseded queries are never delivered.
+ * Submitting the same query again on the same snapshot version joins the
+ * running search or redelivers its result instead of searching again.
+ * Searches go through the map's {@link RouteCache}, so routes asked for
+ * before are answered from it.
+ *
+ * <p>submit and cancel may be called from any thread; callbacks always run
+ * on the delivery executor.
+ */
+public final class RouteQueryPipeline implements AutoCloseable {
+    private final CampusMap campusMap;
+    private final Executor delivery;
+    private final ExecutorService searches;
+
+    // Guarded by this
+    private Query current;
+
+    public RouteQueryPipeline(CampusMap campusMap, Executor delivery) {
+        this.campusMap = Objects.requireNonNull(campusMap, "campusMap");
+        this.delivery = Objects.requireNonNull(delivery, "delivery");
+        searches = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "route-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Finds the route in the background and passes it to onRoute, or null
+     * when there is no path. onFailure receives anything else the search
+     * throws. Neither is called if another query is submitted first.
+     */
+    public void submit(String source, String destination, RoutingStrategy strategy,
+                       Consumer<Route> onRoute, Consumer<Throwable> onFailure) {
+        GraphSnapshot graph = campusMap.snapshot();
+        synchronized (this) {
+            Query query = current;
+            if (query != null && query.matches(source, destination, strategy, graph.getVersion())) {
+                // Same question on the same map: the running search (or its result) answers it
+                query.onRoute = onRoute;
+                query.onFailure = onFailure;
+                if (query.done) {
+                    deliver(query);
+                }
+                return;
+            }
+            cancelCurrent();
+
+            Query next = new Query(source, destination, strategy, graph.getVersion(), onRoute, onFailure);
+            current = next;
+            next.future = searches.submit(() -> run(next, graph));
+        }
+    }
+
+    /**
+     * Stops the current query, if any, without delivering its result.
+     */
+    public synchronized void cancel() {
+        cancelCurrent();
+        current = null;
+    }
+
+    private void cancelCurrent() {
+        if (current != null && !current.done) {
+            current.future.cancel(true);
+        }
+    }
+
+    private void run(Query query, GraphSnapshot graph) {
+        Route route = null;
+        Throwable failure = null;
+        try {
+            route = campusMap.getRouteCache().get(graph, query.source, query.destination, query.strategy);
+        } catch (CancellationException e) {
+            return; // Superseded while searching
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+
+        synchronized (this) {
+            if (query != current) {
+                return;
+            }
+            query.route = route;
+            query.failure = failure;
+            query.done = true;
+            deliver(query);
+        }
+    }
+
+    // Caller holds the lock; the callbacks are read now, the staleness check happens at delivery
+    private void deliver(Query query) {
+        Consumer<Route> onRoute = query.onRoute;
+        Consumer<Throwable> onFailure = query.onFailure;
+        delivery.execute(() -> {
+            synchronized (this) {
+                if (query != current || onRoute != query.onRoute) {
+                    return; // Superseded, or resubmitted with newer callbacks that get their own delivery
+                }
+            }
+            if (query.failure != null) {
+                onFailure.accept(query.failure);
+            } else {
+                onRoute.accept(query.route);
+            }
+        });
+    }
+
+    /**
+     * Cancels the current query and stops the background thread.
+     */
+    @Override
+    public void close() {
+        cancel();
+        searches.shutdownNow();
+    }
+
+    private static final class Query {
+        final String source;
+        final String destination;
+        final RoutingStrategy strategy;
+        final long version;
+        Consumer<Route> onRoute;
+        Consumer<Throwable> onFailure;
+        Future<?> future;
+        boolean done;
+        Route route;
+        Throwable failure;
+
+        Query(String source, String destination, RoutingStrategy strategy, long version,
+              Consumer<Route> onRoute, Consumer<Throwable> onFailure) {
+            this.source = source;
+            this.destination = destination;
+            this.strategy = strategy;
+            this.version = version;
+            this.onRoute = onRoute;
+            this.onFailure = onFailure;
+        }
+
+        boolean matches(String source, String destination, RoutingStrategy strategy, long version) {
+            return this.source.equals(source) && this.destination.equals(destination)
+                    && this.strategy == strategy && this.version == version;
+        }
+    }
+}
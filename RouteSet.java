@@ -0,0 +1,372 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable set of candidate routes with their total distance and estimated
+ * arrival time computed once, in parallel, on a single snapshot, when the
+ * first metric or ranking is asked for. Landmark filters go through an
+ * inverted index from location to the routes that visit it, and rankings
+ * use top-k selection instead of full sorts. Nothing here modifies the
+ * routes or the collection they came from.
+ *
+ * <p>A null route has infinite distance and arrival time and visits no
+ * landmarks. Filtering returns a view that shares the precomputed metrics.
+ */
+public final class RouteSet {
+    private final Data data;
+    private final int[] members; // Ascending indices into data.routes
+
+    private RouteSet(Data data, int[] members) {
+        this.data = data;
+        this.members = members;
+    }
+
+    public static RouteSet of(CampusMap campusMap, Collection<? extends List<CampusMap.Location>> routes) {
+        List<List<CampusMap.Location>> copy = Collections.unmodifiableList(new ArrayList<>(routes));
+        int[] members = new int[copy.size()];
+        Arrays.setAll(members, i -> i);
+        return new RouteSet(new Data(campusMap, campusMap.snapshot(), copy), members);
+    }
+
+    public int size() {
+        return members.length;
+    }
+
+    public boolean isEmpty() {
+        return members.length == 0;
+    }
+
+    public List<CampusMap.Location> getRoute(int index) {
+        return data.routes.get(members[index]);
+    }
+
+    public double getTotalDistance(int index) {
+        return data.metrics().distances[members[index]];
+    }
+
+    public double getEstimatedArrivalTime(int index) {
+        return data.metrics().arrivalTimes[members[index]];
+    }
+
+    /**
+     * The routes in their original order.
+     */
+    public List<List<CampusMap.Location>> getRoutes() {
+        return toRoutes(members);
+    }
+
+    /**
+     * Routes that visit a location with the given name, in their original
+     * order. The index is built on the first call.
+     */
+    public RouteSet withLandmark(String landmark) {
+        if (landmark == null) {
+            return new RouteSet(data, new int[0]);
+        }
+        int[] visiting = data.landmarkIndex().routesVisiting(landmark);
+        // Intersect with this view's members; both are ascending
+        IntList kept = new IntList(Math.min(visiting.length, members.length));
+        int i = 0;
+        int j = 0;
+        while (i < visiting.length && j < members.length) {
+            if (visiting[i] < members[j]) {
+                i++;
+            } else if (visiting[i] > members[j]) {
+                j++;
+            } else {
+                kept.add(visiting[i]);
+                i++;
+                j++;
+            }
+        }
+        return new RouteSet(data, kept.toArray());
+    }
+
+    /**
+     * All routes, shortest first; ties keep their original order.
+     */
+    public List<List<CampusMap.Location>> sortedByDistance() {
+        return topK(members.length, data.metrics().distances);
+    }
+
+    public List<List<CampusMap.Location>> sortedByArrivalTime() {
+        return topK(members.length, data.metrics().arrivalTimes);
+    }
+
+    public List<List<CampusMap.Location>> topByDistance(int k) {
+        return topK(k, data.metrics().distances);
+    }
+
+    public List<List<CampusMap.Location>> topByArrivalTime(int k) {
+        return topK(k, data.metrics().arrivalTimes);
+    }
+
+    /**
+     * The k routes with the lowest score, best first. score receives the
+     * total distance and the estimated arrival time and is evaluated in
+     * parallel, once per route.
+     */
+    public List<List<CampusMap.Location>> top(int k, DoubleBinaryOperator score) {
+        Metrics metrics = data.metrics();
+        double[] scores = new double[data.routes.size()];
+        IntStream.range(0, members.length).parallel().forEach(i -> {
+            int route = members[i];
+            scores[route] = score.applyAsDouble(metrics.distances[route], metrics.arrivalTimes[route]);
+        });
+        return topK(k, scores);
+    }
+
+    private List<List<CampusMap.Location>> topK(int k, double[] scores) {
+        int count = Math.min(Math.max(k, 0), members.length);
+        if (count == members.length) {
+            Integer[] order = new Integer[members.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = members[i];
+            }
+            // Stable, so equal scores keep the original order like List.sort did
+            Arrays.parallelSort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+            int[] sorted = new int[order.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = order[i];
+            }
+            return toRoutes(sorted);
+        }
+        return toRoutes(selectLowest(count, scores));
+    }
+
+    // Bounded max-heap over (score, index); O(n log k) and ties go to the lower index
+    private int[] selectLowest(int k, double[] scores) {
+        int[] heap = new int[k];
+        int size = 0;
+        for (int route : members) {
+            if (size < k) {
+                int position = size++;
+                while (position > 0) {
+                    int parent = (position - 1) >>> 1;
+                    if (!worse(route, heap[parent], scores)) {
+                        break;
+                    }
+                    heap[position] = heap[parent];
+                    position = parent;
+                }
+                heap[position] = route;
+            } else if (k > 0 && worse(heap[0], route, scores)) {
+                siftDown(heap, size, route, scores);
+            }
+        }
+
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            siftDown(heap, i, heap[i], scores);
+        }
+        return result;
+    }
+
+    private static void siftDown(int[] heap, int size, int route, double[] scores) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && worse(heap[child + 1], heap[child], scores)) {
+                child++;
+            }
+            if (!worse(heap[child], route, scores)) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        if (size > 0) {
+            heap[position] = route;
+        }
+    }
+
+    private static boolean worse(int a, int b, double[] scores) {
+        int comparison = Double.compare(scores[a], scores[b]);
+        return comparison > 0 || (comparison == 0 && a > b);
+    }
+
+    private List<List<CampusMap.Location>> toRoutes(int[] indices) {
+        List<List<CampusMap.Location>> result = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            result.add(data.routes.get(index));
+        }
+        return result;
+    }
+
+    private static final class Data {
+        private final CampusMap campusMap;
+        private final GraphSnapshot graph;
+        private final List<List<CampusMap.Location>> routes;
+        private volatile Metrics metrics;
+        private volatile LandmarkIndex landmarkIndex;
+
+        Data(CampusMap campusMap, GraphSnapshot graph, List<List<CampusMap.Location>> routes) {
+            this.campusMap = campusMap;
+            this.graph = graph;
+            this.routes = routes;
+        }
+
+        // Landmark filters alone never need these, so they wait for the first ranking
+        Metrics metrics() {
+            Metrics result = metrics;
+            if (result == null) {
+                synchronized (this) {
+                    result = metrics;
+                    if (result == null) {
+                        result = new Metrics(this);
+                        metrics = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        LandmarkIndex landmarkIndex() {
+            LandmarkIndex index = landmarkIndex;
+            if (index == null) {
+                synchronized (this) {
+                    index = landmarkIndex;
+                    if (index == null) {
+                        index = new LandmarkIndex(this);
+                        landmarkIndex = index;
+                    }
+                }
+            }
+            return index;
+        }
+    }
+
+    private static final class Metrics {
+        private final double[] distances;
+        private final double[] arrivalTimes;
+
+        Metrics(Data data) {
+            int size = data.routes.size();
+            distances = new double[size];
+            arrivalTimes = new double[size];
+            IntStream.range(0, size).parallel().forEach(i -> {
+                List<CampusMap.Location> route = data.routes.get(i);
+                if (route == null) {
+                    distances[i] = Double.POSITIVE_INFINITY;
+                    arrivalTimes[i] = Double.POSITIVE_INFINITY;
+                } else {
+                    distances[i] = data.campusMap.calculateTotalDistance(data.graph, route);
+                    arrivalTimes[i] = data.campusMap.calculateEstimatedArrivalTime(data.graph, route);
+                }
+            });
+        }
+    }
+
+    /**
+     * Inverted index in CSR form over the locations the routes actually
+     * visit: for every key, the ascending indices of the routes that visit
+     * it. Locations on the snapshot are keyed by id; anything else
+     * (detached locations, other maps) by name, with keys numbered after
+     * the snapshot's ids. Costs O(n log n) in the total route length,
+     * however large the map.
+     */
+    private static final class LandmarkIndex {
+        private final GraphSnapshot graph;
+        private final Map<String, Integer> otherKeys = new HashMap<>();
+        private final int[] keys; // Ascending, distinct
+        private final int[] offsets;
+        private final int[] routeIndices;
+
+        LandmarkIndex(Data data) {
+            graph = data.graph;
+
+            // Every (key, route) visit packed into a long, so sorting groups by key and then by route
+            long[] visits = new long[64];
+            int visitCount = 0;
+            for (int route = 0; route < data.routes.size(); route++) {
+                List<CampusMap.Location> locations = data.routes.get(route);
+                if (locations == null) {
+                    continue;
+                }
+                for (CampusMap.Location location : locations) {
+                    if (location == null || location.getName() == null) {
+                        continue;
+                    }
+                    if (visitCount == visits.length) {
+                        visits = Arrays.copyOf(visits, visitCount * 2);
+                    }
+                    visits[visitCount++] = (long) keyOf(data.campusMap, location) << 32 | route;
+                }
+            }
+            Arrays.parallelSort(visits, 0, visitCount);
+
+            IntList distinctKeys = new IntList(16);
+            IntList keyOffsets = new IntList(16);
+            IntList routes = new IntList(visitCount);
+            for (int i = 0; i < visitCount; i++) {
+                if (i > 0 && visits[i] == visits[i - 1]) {
+                    continue; // Same route visiting the same location again
+                }
+                int key = (int) (visits[i] >>> 32);
+                if (distinctKeys.size() == 0 || distinctKeys.get(distinctKeys.size() - 1) != key) {
+                    distinctKeys.add(key);
+                    keyOffsets.add(routes.size());
+                }
+                routes.add((int) visits[i]);
+            }
+            keyOffsets.add(routes.size());
+
+            keys = distinctKeys.toArray();
+            offsets = keyOffsets.toArray();
+            routeIndices = routes.toArray();
+        }
+
+        private int keyOf(CampusMap campusMap, CampusMap.Location location) {
+            if (campusMap.isOnGraph(graph, location)) {
+                return location.getId();
+            }
+            return otherKeys.computeIfAbsent(location.getName(), name -> graph.getNodeCount() + otherKeys.size());
+        }
+
+        int[] routesVisiting(String name) {
+            CampusMap.Location location = graph.getLocation(name);
+            int[] onGraph = location == null ? new int[0] : routesOf(location.getId());
+            Integer other = otherKeys.get(name);
+            if (other == null) {
+                return onGraph;
+            }
+            return union(onGraph, routesOf(other));
+        }
+
+        private int[] routesOf(int key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index < 0) {
+                return new int[0];
+            }
+            return Arrays.copyOfRange(routeIndices, offsets[index], offsets[index + 1]);
+        }
+
+        private static int[] union(int[] a, int[] b) {
+            IntList merged = new IntList(a.length + b.length);
+            int i = 0;
+            int j = 0;
+            while (i < a.length || j < b.length) {
+                if (j == b.length || (i < a.length && a[i] < b[j])) {
+                    merged.add(a[i++]);
+                } else if (i == a.length || b[j] < a[i]) {
+                    merged.add(b[j++]);
+                } else {
+                    merged.add(a[i++]);
+                    j++;
+                }
+            }
+            return merged.toArray();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Point-to-point searches over a {@link RoutingGraph}. All per-query state
+ * lives in the supplied {@link SearchContext}; the searches themselves do
+ * not allocate.
+ */
+public final class RoutingEngine {
+
+    private RoutingEngine() {
+    }
+
+    /**
+     * Runs Dijkstra from source until target is settled. Returns the distance
+     * to target, or positive infinity when it cannot be reached. The path can
+     * be read back through {@link SearchContext#parent(int)}.
+     */
+    public static double dijkstra(RoutingGraph graph, int source, int target, SearchContext context) {
+        context.update(source, 0.0, -1, 0.0);
+
+        while (!context.isQueueEmpty()) {
+            int current = context.poll();
+
+            if (current == target) {
+                return context.distance(current); // Reached the destination
+            }
+
+            double currentDistance = context.distance(current);
+            for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                int neighbor = graph.neighbor(current, i);
+                double newDistance = currentDistance + graph.weight(current, i);
+
+                if (newDistance < context.distance(neighbor)) {
+                    context.update(neighbor, newDistance, current, newDistance);
+                }
+            }
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Dijkstra from source over the whole graph. Afterwards
+     * {@link SearchContext#distance(int)} is exact for every node.
+     */
+    public static void dijkstraAll(RoutingGraph graph, int source, SearchContext context) {
+        context.update(source, 0.0, -1, 0.0);
+
+        while (!context.isQueueEmpty()) {
+            int current = context.poll();
+            double currentDistance = context.distance(current);
+
+            for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                int neighbor = graph.neighbor(current, i);
+                double newDistance = currentDistance + graph.weight(current, i);
+
+                if (newDistance < context.distance(neighbor)) {
+                    context.update(neighbor, newDistance, current, newDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * A* from source to target. With a consistent heuristic every node is
+     * settled at most once and the search stops when target is settled.
+     */
+    public static double aStar(RoutingGraph graph, int source, int target, Heuristic heuristic,
+                               SearchContext context) {
+        context.update(source, 0.0, -1, heuristic.estimate(source, target));
+
+        while (!context.isQueueEmpty()) {
+            int current = context.poll();
+
+            if (current == target) {
+                return context.distance(current);
+            }
+
+            double currentDistance = context.distance(current);
+            for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                int neighbor = graph.neighbor(current, i);
+                double newDistance = currentDistance + graph.weight(current, i);
+
+                if (newDistance < context.distance(neighbor)) {
+                    double estimate = heuristic.estimate(neighbor, target);
+                    if (estimate != Double.POSITIVE_INFINITY) {
+                        context.update(neighbor, newDistance, current, newDistance + estimate);
+                    }
+                }
+            }
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Time-dependent Dijkstra: leaves source at departureMinute and returns
+     * the earliest arrival minute at target, or positive infinity when it
+     * cannot be reached. Context distances hold arrival minutes. Exact
+     * because every travel time profile is FIFO.
+     */
+    public static double earliestArrival(RoutingGraph graph, TravelTimeProfiles profiles, int source, int target,
+                                         double departureMinute, SearchContext context) {
+        context.update(source, departureMinute, -1, departureMinute);
+
+        while (!context.isQueueEmpty()) {
+            int current = context.poll();
+
+            if (current == target) {
+                return context.distance(current);
+            }
+
+            double currentArrival = context.distance(current);
+            for (int i = 0, degree = graph.degree(current); i < degree; i++) {
+                int neighbor = graph.neighbor(current, i);
+                double newArrival = currentArrival
+                        + profiles.travelTime(current, neighbor, graph.weight(current, i), currentArrival);
+
+                if (newArrival < context.distance(neighbor)) {
+                    context.update(neighbor, newArrival, current, newArrival);
+                }
+            }
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Number of nodes on the path ending at target, following parents back
+     * to the search source.
+     */
+    public static int pathLength(SearchContext context, int target) {
+        int length = 0;
+        for (int node = target; node != -1; node = context.parent(node)) {
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Read-only, int-indexed graph the routing engines run on. Node ids are
+ * dense (0 .. getNodeCount() - 1) and the neighbours of a node are
+ * addressed by index 0 .. degree(node) - 1.
+ */
+public interface RoutingGraph {
+
+    int getNodeCount();
+
+    // Number of directed adjacency entries; every addDistance call adds two
+    long getEdgeCount();
+
+    int degree(int node);
+
+    int neighbor(int node, int index);
+
+    double weight(int node, int index);
+
+    // Direct edge length, or positive infinity when the two nodes are not adjacent
+    double distance(int source, int destination);
+
+    double getLatitude(int node);
+
+    double getLongitude(int node);
+
+    String getName(int node);
+}
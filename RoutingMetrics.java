@@ -0,0 +1,372 @@
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+/**
+ * Per-mode query counters, latency histograms and a sampled slow-query log
+ * for the routing engine. Disabled by default; while disabled a query only
+ * pays for one volatile read. Everything is recorded with lock-free adders
+ * and atomics, so it can stay enabled under concurrent load.
+ *
+ * <p>Modes are strategy names, plus {@value #EARLIEST_ARRIVAL} for
+ * time-dependent queries and {@value #BATCH} for the shared expansions of
+ * {@link RouteBatcher}. Work is what the search contexts counted: nodes
+ * settled, first-time queue pushes, decrease-keys, and reopened nodes.
+ */
+public final class RoutingMetrics {
+    public static final String EARLIEST_ARRIVAL = "EARLIEST_ARRIVAL";
+    public static final String BATCH = "BATCH";
+    static final int SLOW_QUERY_CAPACITY = 256;
+    static final Duration DEFAULT_SLOW_QUERY_THRESHOLD = Duration.ofMillis(50);
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"50", "90", "99", "99_9"};
+
+    private volatile boolean enabled;
+    private volatile long slowQueryThresholdNanos = DEFAULT_SLOW_QUERY_THRESHOLD.toNanos();
+    private volatile double slowQuerySampleRate = 1.0;
+
+    private final Map<String, ModeMetrics> modes = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<SlowQuery> slowQueries = new AtomicReferenceArray<>(SLOW_QUERY_CAPACITY);
+    private final AtomicLong slowQueryCount = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Queries that take at least threshold are kept in the slow-query log
+     * with probability sampleRate. The log holds the latest
+     * {@value #SLOW_QUERY_CAPACITY} entries.
+     */
+    public void setSlowQueryLog(Duration threshold, double sampleRate) {
+        if (threshold.isNegative()) {
+            throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        }
+        if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1: " + sampleRate);
+        }
+        slowQueryThresholdNanos = threshold.toNanos();
+        slowQuerySampleRate = sampleRate;
+    }
+
+    // Called by the query paths only while enabled; contexts are the ones the search ran on
+    void record(String mode, String source, String destination, long version, long nanos, boolean found,
+                SearchContext... contexts) {
+        long settled = 0;
+        long pushes = 0;
+        long decreases = 0;
+        long reopens = 0;
+        for (SearchContext context : contexts) {
+            settled += context.getSettledCount();
+            pushes += context.getPushCount();
+            decreases += context.getDecreaseCount();
+            reopens += context.getReopenCount();
+        }
+
+        ModeMetrics metrics = modes.computeIfAbsent(mode, name -> new ModeMetrics());
+        metrics.queries.increment();
+        if (!found) {
+            metrics.notFound.increment();
+        }
+        metrics.settled.add(settled);
+        metrics.pushes.add(pushes);
+        metrics.decreases.add(decreases);
+        metrics.reopens.add(reopens);
+        metrics.latency.record(nanos);
+
+        if (nanos >= slowQueryThresholdNanos) {
+            double sampleRate = slowQuerySampleRate;
+            if (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                long sequence = slowQueryCount.getAndIncrement();
+                slowQueries.set((int) (sequence % SLOW_QUERY_CAPACITY), new SlowQuery(sequence,
+                        System.currentTimeMillis(), mode, source, destination, version, nanos, found,
+                        settled, pushes, decreases, reopens));
+            }
+        }
+    }
+
+    public LatencyHistogram getLatencyHistogram(String mode) {
+        ModeMetrics metrics = modes.get(mode);
+        return metrics == null ? null : metrics.latency;
+    }
+
+    /**
+     * The logged slow queries, oldest first.
+     */
+    public List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> queries = new ArrayList<>(SLOW_QUERY_CAPACITY);
+        for (int i = 0; i < SLOW_QUERY_CAPACITY; i++) {
+            SlowQuery query = slowQueries.get(i);
+            if (query != null) {
+                queries.add(query);
+            }
+        }
+        queries.sort(Comparator.comparingLong(SlowQuery::getSequence));
+        return queries;
+    }
+
+    /**
+     * Flat "mode.name" -> value view of every counter and latency quantile,
+     * sorted by mode. Latencies are in nanoseconds.
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        for (Map.Entry<String, ModeMetrics> entry : new TreeMap<>(modes).entrySet()) {
+            String mode = entry.getKey();
+            ModeMetrics metrics = entry.getValue();
+            statistics.put(mode + ".queries", metrics.queries.sum());
+            statistics.put(mode + ".notFound", metrics.notFound.sum());
+            statistics.put(mode + ".settledNodes", metrics.settled.sum());
+            statistics.put(mode + ".queuePushes", metrics.pushes.sum());
+            statistics.put(mode + ".decreaseKeys", metrics.decreases.sum());
+            statistics.put(mode + ".reopenedNodes", metrics.reopens.sum());
+            statistics.put(mode + ".latencySumNanos", metrics.latency.getSumNanos());
+            statistics.put(mode + ".latencyMaxNanos", metrics.latency.getMaxNanos());
+            for (int i = 0; i < QUANTILES.length; i++) {
+                statistics.put(mode + ".latencyP" + QUANTILE_LABELS[i] + "Nanos",
+                        metrics.latency.getValueAtQuantile(QUANTILES[i]));
+            }
+        }
+        statistics.put("slowQueries", slowQueryCount.get());
+        return statistics;
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format, latencies in
+     * seconds.
+     */
+    public String toText() {
+        Map<String, ModeMetrics> sorted = new TreeMap<>(modes);
+        StringBuilder text = new StringBuilder();
+        counter(text, sorted, "campusmap_routing_queries_total", "Routing queries", metrics -> metrics.queries);
+        counter(text, sorted, "campusmap_routing_not_found_total", "Queries without a path",
+                metrics -> metrics.notFound);
+        counter(text, sorted, "campusmap_routing_settled_nodes_total", "Nodes settled", metrics -> metrics.settled);
+        counter(text, sorted, "campusmap_routing_queue_pushes_total", "Nodes queued", metrics -> metrics.pushes);
+        counter(text, sorted, "campusmap_routing_decrease_keys_total", "Queue decrease-key operations",
+                metrics -> metrics.decreases);
+        counter(text, sorted, "campusmap_routing_reopened_nodes_total", "Settled nodes queued again",
+                metrics -> metrics.reopens);
+
+        String latency = "campusmap_routing_latency_seconds";
+        text.append("# HELP ").append(latency).append(" Query latency\n");
+        text.append("# TYPE ").append(latency).append(" summary\n");
+        for (Map.Entry<String, ModeMetrics> entry : sorted.entrySet()) {
+            LatencyHistogram histogram = entry.getValue().latency;
+            for (double quantile : QUANTILES) {
+                text.append(latency).append("{mode=\"").append(entry.getKey()).append("\",quantile=\"")
+                        .append(quantile).append("\"} ").append(seconds(histogram.getValueAtQuantile(quantile)))
+                        .append('\n');
+            }
+            text.append(latency).append("_sum{mode=\"").append(entry.getKey()).append("\"} ")
+                    .append(seconds(histogram.getSumNanos())).append('\n');
+            text.append(latency).append("_count{mode=\"").append(entry.getKey()).append("\"} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+
+        text.append("# HELP campusmap_routing_slow_queries_total Queries logged as slow\n");
+        text.append("# TYPE campusmap_routing_slow_queries_total counter\n");
+        text.append("campusmap_routing_slow_queries_total ").append(slowQueryCount.get()).append('\n');
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, Map<String, ModeMetrics> modes, String name, String help,
+                                Function<ModeMetrics, LongAdder> value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, ModeMetrics> entry : modes.entrySet()) {
+            text.append(name).append("{mode=\"").append(entry.getKey()).append("\"} ")
+                    .append(value.apply(entry.getValue()).sum()).append('\n');
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * Publishes {@link #getStatistics()} as read-only attributes of an MBean
+     * on the platform server, e.g. under "CampusMap:type=RoutingMetrics".
+     */
+    public ObjectName registerMBean(String objectName) throws JMException {
+        ObjectName name = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), name);
+        return name;
+    }
+
+    private static final class ModeMetrics {
+        final LongAdder queries = new LongAdder();
+        final LongAdder notFound = new LongAdder();
+        final LongAdder settled = new LongAdder();
+        final LongAdder pushes = new LongAdder();
+        final LongAdder decreases = new LongAdder();
+        final LongAdder reopens = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    // Attributes follow the modes seen so far, so the MBean info is rebuilt on every request
+    private final class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Long value = getStatistics().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Routing metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Long> statistics = getStatistics();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Long value = statistics.get(attribute);
+                if (value != null) {
+                    list.add(new Attribute(attribute, value));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : getStatistics().keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+            }
+            return new MBeanInfo(RoutingMetrics.class.getName(), "Routing query metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+
+    /**
+     * One logged slow query and the work it did.
+     */
+    public static final class SlowQuery {
+        private final long sequence;
+        private final long timestampMillis;
+        private final String mode;
+        private final String source;
+        private final String destination;
+        private final long version;
+        private final long nanos;
+        private final boolean found;
+        private final long settledNodes;
+        private final long queuePushes;
+        private final long decreaseKeys;
+        private final long reopenedNodes;
+
+        SlowQuery(long sequence, long timestampMillis, String mode, String source, String destination, long version,
+                  long nanos, boolean found, long settledNodes, long queuePushes, long decreaseKeys,
+                  long reopenedNodes) {
+            this.sequence = sequence;
+            this.timestampMillis = timestampMillis;
+            this.mode = mode;
+            this.source = source;
+            this.destination = destination;
+            this.version = version;
+            this.nanos = nanos;
+            this.found = found;
+            this.settledNodes = settledNodes;
+            this.queuePushes = queuePushes;
+            this.decreaseKeys = decreaseKeys;
+            this.reopenedNodes = reopenedNodes;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        // Snapshot version the query ran on
+        public long getVersion() {
+            return version;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public boolean isFound() {
+            return found;
+        }
+
+        public long getSettledNodes() {
+            return settledNodes;
+        }
+
+        public long getQueuePushes() {
+            return queuePushes;
+        }
+
+        public long getDecreaseKeys() {
+            return decreaseKeys;
+        }
+
+        public long getReopenedNodes() {
+            return reopenedNodes;
+        }
+
+        @Override
+        public String toString() {
+            return mode + " " + source + " -> " + destination + " took " + nanos / 1000 + " us"
+                    + (found ? "" : " (no path)") + ": settled " + settledNodes + ", pushed " + queuePushes
+                    + ", decreased " + decreaseKeys + ", reopened " + reopenedNodes + ", version " + version;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless HTTP front end for a CampusMap on the JDK's built-in server, so
+ * the map can run behind a load balancer. Endpoints:
+ *
+ * <pre>
+ * GET  /route?from=A&amp;to=B                         shortest route, batched by source
+ * GET  /matrix?source=A&amp;source=B&amp;destination=C    distance matrix, optionally
+ * POST /matrix (same parameters as a form)          &amp;arrivalTimes=true
+ * GET  /nearest?lat=5.65&amp;lon=-0.19&amp;k=5            closest locations, k defaults to 1
+ * GET  /metrics                                    routing metrics, Prometheus text format
+ * </pre>
+ *
+ * Responses are JSON; errors are {"error": "..."} with status 400, 404 or
+ * 405. Matrices are computed and written {@value #MATRIX_BLOCK_ROWS} rows
+ * at a time with chunked encoding, so a large one is never held in memory
+ * as text. Every request gets its own virtual thread when the JDK has them;
+ * otherwise requests share a fixed pool of platform threads.
+ */
+public final class RoutingServer implements AutoCloseable {
+    private static final int MATRIX_BLOCK_ROWS = 64;
+    private static final int MAX_NEAREST = 1000;
+    private static final int MAX_BODY_BYTES = 16 << 20;
+    // Route requests mostly wait on a shared batch, so platform threads outnumber processors
+    private static final int REQUEST_THREADS_PER_PROCESSOR = 4;
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final CampusMap campusMap;
+    private final RouteBatcher routeBatcher;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // The request thread runs matrix rows too, and may be a fresh virtual thread every time
+    private final SearchContextPool matrixContexts =
+            new SearchContextPool(Runtime.getRuntime().availableProcessors());
+    private final LongAdder abortedResponses = new LongAdder();
+
+    public RoutingServer(CampusMap campusMap, InetSocketAddress address) throws IOException {
+        this.campusMap = campusMap;
+        routeBatcher = new RouteBatcher(campusMap);
+        executor = newRequestExecutor();
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/route", exchange -> handle(exchange, false, this::route));
+        server.createContext("/matrix", exchange -> handle(exchange, true, this::matrix));
+        server.createContext("/nearest", exchange -> handle(exchange, false, this::nearest));
+        server.createContext("/metrics", exchange -> handle(exchange, false, this::metrics));
+    }
+
+    // Virtual threads arrived in JDK 21 and the build targets 17, so the factory is looked up at run time
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // A fixed pool, so a burst of requests queues up instead of starting a thread each
+            int threads = REQUEST_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "routing-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public RouteBatcher getRouteBatcher() {
+        return routeBatcher;
+    }
+
+    /**
+     * Responses that could not be written, nearly always because the
+     * client disconnected first.
+     */
+    public long getAbortedResponseCount() {
+        return abortedResponses.sum();
+    }
+
+    /**
+     * Stops accepting requests, lets running ones finish for up to a
+     * second, then stops their threads.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    private interface Endpoint {
+        void serve(HttpExchange exchange, Map<String, List<String>> parameters) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, boolean allowPost, Endpoint endpoint) {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !(allowPost && method.equals("POST"))) {
+                exchange.getResponseHeaders().set("Allow", allowPost ? "GET, POST" : "GET");
+                sendError(exchange, 405, "Method not allowed: " + method);
+                return;
+            }
+            endpoint.serve(exchange, parameters(exchange));
+        } catch (IllegalArgumentException e) {
+            sendErrorIfPossible(exchange, 400, e.getMessage());
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it, but a rising count is worth seeing
+            abortedResponses.increment();
+        } catch (RuntimeException e) {
+            sendErrorIfPossible(exchange, 500, "Internal error: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendErrorIfPossible(HttpExchange exchange, int status, String message) {
+        // Once a streamed response has started, closing it unfinished is the only signal left
+        if (exchange.getResponseCode() == -1) {
+            try {
+                sendError(exchange, status, message);
+            } catch (IOException e) {
+                abortedResponses.increment();
+            }
+        }
+    }
+
+    // Query string parameters, plus the form body of a POST
+    private static Map<String, List<String>> parameters(HttpExchange exchange) throws IOException {
+        Map<String, List<String>> parameters = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+        if (exchange.getRequestMethod().equals("POST")) {
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            parseForm(new String(body, StandardCharsets.UTF_8), parameters);
+        }
+        return parameters;
+    }
+
+    private static void parseForm(String form, Map<String, List<String>> parameters) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value.trim());
+        }
+    }
+
+    private static String parameter(Map<String, List<String>> parameters, String name, String defaultValue) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+    private static String requiredParameter(Map<String, List<String>> parameters, String name) {
+        String value = parameter(parameters, name, null);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static double doubleParameter(Map<String, List<String>> parameters, String name) {
+        String value = requiredParameter(parameters, name);
+        try {
+            double number = Double.parseDouble(value);
+            if (!Double.isFinite(number)) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + name + "=" + value);
+        }
+    }
+
+    private void route(HttpExchange exchange, Map<String, List<String>> parameters) throws IOException {
+        String from = requiredParameter(parameters, "from");
+        String to = requiredParameter(parameters, "to");
+        for (String name : new String[] {from, to}) {
+            if (campusMap.getLocation(name) == null) {
+                sendError(exchange, 404, "Unknown location: " + name);
+                return;
+            }
+        }
+
+        Route route = routeBatcher.route(from, to);
+        if (route == null) {
+            sendError(exchange, 404, "No path from " + from + " to " + to);
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"from\":");
+        appendString(json, from);
+        json.append(",\"to\":");
+        appendString(json, to);
+        json.append(",\"version\":").append(route.getVersion());
+        json.append(",\"distance\":");
+        appendNumber(json, route.getTotalDistance());
+        json.append(",\"arrivalTime\":");
+        appendNumber(json, route.getEstimatedArrivalTime());
+        json.append(",\"path\":[");
+        List<CampusMap.Location> path = route.getPath();
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendLocation(json, path.get(i));
+            json.append('}');
+        }
+        json.append("]}");
+        send(exchange, 200, JSON, json.toString());
+    }
+
+    private void matrix(HttpExchange exchange, Map<String, List<String>> parameters) throws IOException {
+        List<String> sources = parameters.getOrDefault("source", List.of());
+        List<String> destinations = parameters.getOrDefault("destination", List.of());
+        if (sources.isEmpty() || destinations.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one source and one destination");
+        }
+        boolean includeArrivalTimes = Boolean.parseBoolean(parameter(parameters, "arrivalTimes", "false"));
+
+        GraphSnapshot graph = campusMap.snapshot();
+        int[] sourceIds = CampusMap.toIds(graph, sources);
+        int[] destinationIds = CampusMap.toIds(graph, destinations);
+
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0); // Chunked
+        Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8),
+                1 << 16);
+        out.write("{\"version\":");
+        out.write(Long.toString(graph.getVersion()));
+        out.write(",\"destinations\":[");
+        for (int column = 0; column < destinations.size(); column++) {
+            if (column > 0) {
+                out.write(',');
+            }
+            appendString(out, destinations.get(column));
+        }
+        out.write("],\"rows\":[");
+
+        // Unknown names come back as rows or columns of null, like infinity in DistanceMatrix
+        for (int start = 0; start < sourceIds.length; start += MATRIX_BLOCK_ROWS) {
+            int end = Math.min(start + MATRIX_BLOCK_ROWS, sourceIds.length);
+            DistanceMatrix block = DistanceMatrix.compute(graph, Arrays.copyOfRange(sourceIds, start, end),
+                    destinationIds, includeArrivalTimes, matrixContexts);
+            for (int row = 0; row < end - start; row++) {
+                out.write(start + row > 0 ? ",{\"source\":" : "{\"source\":");
+                appendString(out, sources.get(start + row));
+                out.write(",\"distances\":[");
+                for (int column = 0; column < destinationIds.length; column++) {
+                    if (column > 0) {
+                        out.write(',');
+                    }
+                    appendNumber(out, block.getDistance(row, column));
+                }
+                if (includeArrivalTimes) {
+                    out.write("],\"arrivalTimes\":[");
+                    for (int column = 0; column < destinationIds.length; column++) {
+                        if (column > 0) {
+                            out.write(',');
+                        }
+                        appendNumber(out, block.getArrivalTime(row, column));
+                    }
+                }
+                out.write("]}");
+            }
+            out.flush();
+        }
+        out.write("]}");
+        out.close();
+    }
+
+    private void nearest(HttpExchange exchange, Map<String, List<String>> parameters) throws IOException {
+        double latitude = doubleParameter(parameters, "lat");
+        double longitude = doubleParameter(parameters, "lon");
+        int k;
+        try {
+            k = Integer.parseInt(parameter(parameters, "k", "1"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: k=" + parameter(parameters, "k", ""));
+        }
+        if (k < 1 || k > MAX_NEAREST) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_NEAREST + ": " + k);
+        }
+
+        GraphSnapshot graph = campusMap.snapshot();
+        int[] nearest = graph.getSpatialIndex().nearest(latitude, longitude, k);
+        StringBuilder json = new StringBuilder(64 + 96 * nearest.length);
+        json.append("{\"version\":").append(graph.getVersion()).append(",\"locations\":[");
+        for (int i = 0; i < nearest.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            CampusMap.Location location = graph.getLocation(nearest[i]);
+            appendLocation(json, location);
+            json.append(",\"distance\":");
+            appendNumber(json, GeoMath.haversine(latitude, longitude, location.getLatitude(),
+                    location.getLongitude()));
+            json.append('}');
+        }
+        json.append("]}");
+        send(exchange, 200, JSON, json.toString());
+    }
+
+    private void metrics(HttpExchange exchange, Map<String, List<String>> parameters) throws IOException {
+        StringBuilder text = new StringBuilder(campusMap.getRoutingMetrics().toText());
+        text.append("# HELP campusmap_server_route_requests_total Route requests\n");
+        text.append("# TYPE campusmap_server_route_requests_total counter\n");
+        text.append("campusmap_server_route_requests_total ").append(routeBatcher.getRequestCount()).append('\n');
+        text.append("# HELP campusmap_server_route_batches_total Expansions that answered the route requests\n");
+        text.append("# TYPE campusmap_server_route_batches_total counter\n");
+        text.append("campusmap_server_route_batches_total ").append(routeBatcher.getBatchCount()).append('\n');
+        text.append("# HELP campusmap_server_aborted_responses_total Responses cut short by a failed write\n");
+        text.append("# TYPE campusmap_server_aborted_responses_total counter\n");
+        text.append("campusmap_server_aborted_responses_total ").append(getAbortedResponseCount()).append('\n');
+        send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", text.toString());
+    }
+
+    // Opens the location object, leaving room for more fields
+    private static void appendLocation(StringBuilder json, CampusMap.Location location) throws IOException {
+        json.append("{\"name\":");
+        appendString(json, location.getName());
+        json.append(",\"latitude\":");
+        appendNumber(json, location.getLatitude());
+        json.append(",\"longitude\":");
+        appendNumber(json, location.getLongitude());
+    }
+
+    // Infinity means unreachable, and JSON has no infinity
+    private static void appendNumber(Appendable json, double value) throws IOException {
+        json.append(Double.isFinite(value) ? Double.toString(value) : "null");
+    }
+
+    private static void appendString(Appendable json, String value) throws IOException {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message == null ? "" : message);
+        json.append('}');
+        send(exchange, status, JSON, json.toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Serves a saved graph (--graph=file, campus.graph by default) on
+     * --port, 8080 by default. Routing metrics are enabled.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        String graphFile = "campus.graph";
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--graph=")) {
+                graphFile = arg.substring("--graph=".length());
+            } else {
+                throw new IllegalArgumentException("Usage: RoutingServer [--port=8080] [--graph=campus.graph]");
+            }
+        }
+
+        CampusMap campusMap = CampusMap.load(Path.of(graphFile));
+        campusMap.getRoutingMetrics().setEnabled(true);
+
+        RoutingServer server = new RoutingServer(campusMap, new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Serving " + campusMap.getLocationCount() + " locations on http://localhost:"
+                + server.getAddress().getPort());
+    }
+}
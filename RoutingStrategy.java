@@ -0,0 +1,15 @@
+/**
+ * Search algorithm used by CampusMap.findShortestPath.
+ */
+public enum RoutingStrategy {
+    // Plain Dijkstra, expands in every direction
+    DIJKSTRA,
+    // A* guided by the validated haversine distance to the destination
+    A_STAR,
+    // A* guided by precomputed landmark distances (see CampusMap.prepareLandmarks)
+    ALT,
+    // Bidirectional upward search in a contraction hierarchy (see CampusMap.prepareContractionHierarchy)
+    CONTRACTION_HIERARCHY,
+    // Cached shortest-path tree of the source, repaired incrementally when paths change (see ShortestPathTrees)
+    DYNAMIC
+}
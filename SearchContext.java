@@ -0,0 +1,270 @@
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Reusable per-thread state for one shortest-path search over int node ids.
+ * Distances and parents are only valid for nodes stamped with the current
+ * generation, so starting a new search never clears O(V) arrays. The queue
+ * is an indexed 4-ary min-heap with decrease-key, so every node is in the
+ * queue at most once and there are no stale entries to skip.
+ */
+public final class SearchContext {
+    private static final int ARITY = 4;
+    private static final int SETTLED = -1;
+    private static final int CANCELLATION_CHECK_MASK = 4095;
+
+    private static final ThreadLocal<SearchContext> CONTEXTS = new ThreadLocal<>();
+
+    private int generation;
+    private int[] stamps;
+    private double[] distances;
+    private int[] parents;
+
+    private int[] heapPositions;
+    private int[] heapNodes;
+    private double[] heapKeys;
+    private int heapSize;
+
+    // Per-node scratch for callers, allocated on first use; marks are stamped like distances
+    private int[] markStamps;
+    private double[] values;
+
+    // Work done since the last reset, for instrumentation
+    private int settledCount;
+    private int pushCount;
+    private int decreaseCount;
+    private int reopenCount;
+
+    public SearchContext(int nodeCount) {
+        generation = 1;
+        stamps = new int[nodeCount];
+        distances = new double[nodeCount];
+        parents = new int[nodeCount];
+        heapPositions = new int[nodeCount];
+        heapNodes = new int[nodeCount];
+        heapKeys = new double[nodeCount];
+    }
+
+    /**
+     * Returns this thread's context, reset and large enough for nodeCount nodes.
+     */
+    public static SearchContext forThread(int nodeCount) {
+        SearchContext context = CONTEXTS.get();
+        if (context == null || context.capacity() < nodeCount) {
+            context = new SearchContext(Math.max(nodeCount, context == null ? 0 : context.capacity() * 2));
+            CONTEXTS.set(context);
+        }
+        context.reset();
+        return context;
+    }
+
+    public int capacity() {
+        return stamps.length;
+    }
+
+    public void reset() {
+        heapSize = 0;
+        settledCount = 0;
+        pushCount = 0;
+        decreaseCount = 0;
+        reopenCount = 0;
+        if (++generation == Integer.MAX_VALUE) {
+            // Once every 2^31 searches the stamps really have to be cleared
+            Arrays.fill(stamps, 0);
+            if (markStamps != null) {
+                Arrays.fill(markStamps, 0);
+            }
+            generation = 1;
+        }
+    }
+
+    public boolean isReached(int node) {
+        return stamps[node] == generation;
+    }
+
+    public boolean isSettled(int node) {
+        return stamps[node] == generation && heapPositions[node] == SETTLED;
+    }
+
+    public double distance(int node) {
+        return stamps[node] == generation ? distances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    public int parent(int node) {
+        return stamps[node] == generation ? parents[node] : -1;
+    }
+
+    /**
+     * Marks node for the current search, such as a target still to be
+     * settled. Returns false when it was already marked. Marks are cleared
+     * by the next reset without touching the other nodes.
+     */
+    public boolean mark(int node) {
+        if (markStamps == null) {
+            markStamps = new int[stamps.length];
+        }
+        if (markStamps[node] == generation) {
+            return false;
+        }
+        markStamps[node] = generation;
+        return true;
+    }
+
+    public boolean isMarked(int node) {
+        return markStamps != null && markStamps[node] == generation;
+    }
+
+    /**
+     * A scratch value per node that callers may use alongside the search.
+     * It is not cleared between searches, so only read entries written
+     * during the current one.
+     */
+    public double[] values() {
+        if (values == null) {
+            values = new double[stamps.length];
+        }
+        return values;
+    }
+
+    /**
+     * Records a new tentative distance for node and queues it with the given
+     * key. The caller must only pass improvements of {@link #distance(int)}.
+     */
+    public void update(int node, double distance, int parent, double key) {
+        if (stamps[node] != generation) {
+            stamps[node] = generation;
+            distances[node] = distance;
+            parents[node] = parent;
+            int position = heapSize++;
+            heapNodes[position] = node;
+            heapKeys[position] = key;
+            heapPositions[node] = position;
+            siftUp(position);
+            pushCount++;
+        } else {
+            distances[node] = distance;
+            parents[node] = parent;
+            int position = heapPositions[node];
+            if (position == SETTLED) {
+                // Only reachable with an inconsistent heuristic; reopen the node
+                position = heapSize++;
+                heapNodes[position] = node;
+                heapKeys[position] = key;
+                heapPositions[node] = position;
+                siftUp(position);
+                reopenCount++;
+            } else if (key < heapKeys[position]) {
+                heapKeys[position] = key;
+                siftUp(position);
+                decreaseCount++;
+            }
+        }
+    }
+
+    public boolean isQueueEmpty() {
+        return heapSize == 0;
+    }
+
+    public double peekKey() {
+        return heapSize == 0 ? Double.POSITIVE_INFINITY : heapKeys[0];
+    }
+
+    /**
+     * Removes the node with the smallest key and marks it settled. Every
+     * few thousand nodes it checks whether the thread was interrupted and
+     * throws CancellationException if so, which lets callers abandon long
+     * searches without every algorithm polling the flag itself.
+     */
+    public int poll() {
+        if ((settledCount & CANCELLATION_CHECK_MASK) == CANCELLATION_CHECK_MASK
+                && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search interrupted");
+        }
+        int node = heapNodes[0];
+        heapPositions[node] = SETTLED;
+        settledCount++;
+        int last = --heapSize;
+        if (last > 0) {
+            heapNodes[0] = heapNodes[last];
+            heapKeys[0] = heapKeys[last];
+            heapPositions[heapNodes[0]] = 0;
+            siftDown(0);
+        }
+        return node;
+    }
+
+    /**
+     * Nodes polled since the last reset.
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    // Nodes queued for the first time since the last reset
+    public int getPushCount() {
+        return pushCount;
+    }
+
+    public int getDecreaseCount() {
+        return decreaseCount;
+    }
+
+    /**
+     * Settled nodes queued again, which only an inconsistent heuristic
+     * causes. The indexed heap never holds stale entries, so this is the
+     * only wasted work a search can do.
+     */
+    public int getReopenCount() {
+        return reopenCount;
+    }
+
+    private void siftUp(int position) {
+        int node = heapNodes[position];
+        double key = heapKeys[position];
+        while (position > 0) {
+            int parentPosition = (position - 1) / ARITY;
+            if (heapKeys[parentPosition] <= key) {
+                break;
+            }
+            move(parentPosition, position);
+            position = parentPosition;
+        }
+        place(node, key, position);
+    }
+
+    private void siftDown(int position) {
+        int node = heapNodes[position];
+        double key = heapKeys[position];
+        while (true) {
+            int firstChild = position * ARITY + 1;
+            if (firstChild >= heapSize) {
+                break;
+            }
+            int lastChild = Math.min(firstChild + ARITY, heapSize);
+            int smallest = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (heapKeys[child] < heapKeys[smallest]) {
+                    smallest = child;
+                }
+            }
+            if (heapKeys[smallest] >= key) {
+                break;
+            }
+            move(smallest, position);
+            position = smallest;
+        }
+        place(node, key, position);
+    }
+
+    private void move(int from, int to) {
+        heapNodes[to] = heapNodes[from];
+        heapKeys[to] = heapKeys[from];
+        heapPositions[heapNodes[to]] = to;
+    }
+
+    private void place(int node, double key, int position) {
+        heapNodes[position] = node;
+        heapKeys[position] = key;
+        heapPositions[node] = position;
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of search contexts, for callers whose threads don't live
+ * long enough for SearchContext.forThread to pay off, such as a virtual
+ * thread per request. Keeps at most maxIdle contexts between searches and
+ * drops pooled ones that are too small for the graph being searched, so
+ * after the map grows the pool refills at the new size.
+ */
+final class SearchContextPool {
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<SearchContext> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    SearchContextPool(int maxIdle) {
+        if (maxIdle <= 0) {
+            throw new IllegalArgumentException("maxIdle must be positive: " + maxIdle);
+        }
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * A reset context for nodeCount nodes, which the caller must hand back
+     * to {@link #release(SearchContext)} when its search is done.
+     */
+    SearchContext acquire(int nodeCount) {
+        SearchContext context;
+        while ((context = idle.poll()) != null) {
+            idleCount.decrementAndGet();
+            if (context.capacity() >= nodeCount) {
+                context.reset();
+                return context;
+            }
+        }
+        return new SearchContext(nodeCount);
+    }
+
+    void release(SearchContext context) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(context);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    // Contexts waiting to be reused
+    int size() {
+        return idleCount.get();
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Full shortest-path trees for the most recently used origins, kept across
+ * graph changes for the DYNAMIC strategy. Every publish logs which paths
+ * were added, removed or reweighted. When a query finds its origin's tree
+ * older than the snapshot, the tree is repaired in the style of
+ * Ramalingam and Reps: the subtrees hanging off lengthened or removed tree
+ * edges are detached, re-attached through their best remaining neighbour,
+ * and a Dijkstra seeded with those nodes and the shortened or added paths
+ * settles only the nodes whose distance actually changed. A repair
+ * therefore costs about as much as the region the changes affect.
+ *
+ * <p>Like the landmark and contraction-hierarchy code this relies on paths
+ * being symmetric, which addDistance guarantees and Location.addNeighbor
+ * does not; CampusMap falls back to Dijkstra while the map has one-way paths.
+ */
+public final class ShortestPathTrees {
+    // Changed directed edges kept for repairs; trees older than the oldest kept change are rebuilt
+    private static final int MAX_LOGGED_EDGES = 1 << 18;
+
+    private final int maxOrigins;
+
+    // Access-ordered, so iteration starts at the least recently used origin
+    private final LinkedHashMap<Integer, Tree> trees = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Guarded by changes
+    private final ArrayDeque<ChangeSet> changes = new ArrayDeque<>();
+    private long completeSince; // Every change published after this version is in the log
+    private int loggedEdges;
+
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder repairs = new LongAdder();
+    private final LongAdder repairedNodes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ShortestPathTrees(int maxOrigins) {
+        if (maxOrigins <= 0) {
+            throw new IllegalArgumentException("maxOrigins must be positive: " + maxOrigins);
+        }
+        this.maxOrigins = maxOrigins;
+    }
+
+    /**
+     * Records the edges changed by the publish of the given version, as
+     * (source, destination) pairs, or null when they were not tracked. Must
+     * be called before the snapshot becomes visible to readers.
+     */
+    void recordChanges(long version, int[] changedEdges) {
+        synchronized (changes) {
+            if (changedEdges == null) {
+                changes.clear();
+                loggedEdges = 0;
+                completeSince = version;
+                return;
+            }
+            if (changedEdges.length == 0) {
+                return;
+            }
+            changes.addLast(new ChangeSet(version, changedEdges));
+            loggedEdges += changedEdges.length / 2;
+            while (loggedEdges > MAX_LOGGED_EDGES) {
+                ChangeSet oldest = changes.removeFirst();
+                loggedEdges -= oldest.edges.length / 2;
+                completeSince = oldest.version;
+            }
+        }
+    }
+
+    // Changes published after version from up to and including version to, or null if some were dropped
+    private int[] changesBetween(long from, long to) {
+        synchronized (changes) {
+            if (from < completeSince) {
+                return null;
+            }
+            IntList edges = new IntList(16);
+            for (ChangeSet changeSet : changes) {
+                if (changeSet.version > from && changeSet.version <= to) {
+                    for (int edge : changeSet.edges) {
+                        edges.add(edge);
+                    }
+                }
+            }
+            return edges.toArray();
+        }
+    }
+
+    /**
+     * Shortest path as location ids, or null when the destination is
+     * unreachable. Builds the source's tree on first use and brings it up
+     * to date with the snapshot otherwise. Any search this takes runs on
+     * context, which must be reset and hold the whole graph; its counters
+     * afterwards are the work this query did, zero when the tree was
+     * already current.
+     */
+    int[] findPath(GraphSnapshot graph, int source, int destination, SearchContext context) {
+        Tree tree;
+        synchronized (trees) {
+            tree = trees.get(source);
+            if (tree == null) {
+                tree = new Tree(source);
+                trees.put(source, tree);
+                evictOverflow();
+            }
+        }
+
+        synchronized (tree) {
+            if (tree.version > graph.getVersion()) {
+                // A writer published after this caller took its snapshot; trees only move forward
+                return searchWithoutTree(graph, source, destination, context);
+            }
+            if (tree.version < graph.getVersion()) {
+                try {
+                    int[] changedEdges = tree.distances == null ? null
+                            : changesBetween(tree.version, graph.getVersion());
+                    if (changedEdges == null) {
+                        build(tree, graph, context);
+                    } else {
+                        repair(tree, graph, changedEdges, context);
+                    }
+                } catch (RuntimeException | Error e) {
+                    tree.distances = null; // Half-repaired; rebuild next time
+                    tree.version = 0;
+                    throw e;
+                }
+            }
+            return tree.pathTo(destination);
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Tree> iterator = trees.values().iterator();
+        while (trees.size() > maxOrigins && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private void build(Tree tree, GraphSnapshot graph, SearchContext context) {
+        int nodeCount = graph.getNodeCount();
+        RoutingEngine.dijkstraAll(graph, tree.source, context);
+
+        double[] distances = new double[nodeCount];
+        int[] parents = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            distances[node] = context.distance(node);
+            parents[node] = context.parent(node);
+        }
+        tree.distances = distances;
+        tree.parents = parents;
+        tree.version = graph.getVersion();
+        builds.increment();
+    }
+
+    private void repair(Tree tree, GraphSnapshot graph, int[] changedEdges, SearchContext context) {
+        tree.ensureCapacity(graph.getNodeCount());
+        double[] distances = tree.distances;
+        int[] parents = tree.parents;
+
+        // Tree edges that got longer or disappeared; checked against the old tree before anything moves
+        IntList detached = new IntList(16);
+        for (int i = 0; i < changedEdges.length; i += 2) {
+            int from = changedEdges[i];
+            int to = changedEdges[i + 1];
+            if (parents[to] == from && !(distances[from] + graph.distance(from, to) <= distances[to])) {
+                detached.add(to);
+            }
+        }
+
+        // Their whole subtrees lose their distances. Every remaining tree edge is still in the graph,
+        // since removed ones were detached above, so children are found among the neighbours
+        IntList affected = new IntList(16);
+        for (int i = 0; i < detached.size(); i++) {
+            int root = detached.get(i);
+            if (distances[root] == Double.POSITIVE_INFINITY) {
+                continue; // Already inside another detached subtree
+            }
+            int first = affected.size();
+            distances[root] = Double.POSITIVE_INFINITY;
+            affected.add(root);
+            for (int j = first; j < affected.size(); j++) {
+                int node = affected.get(j);
+                for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                    int child = graph.neighbor(node, k);
+                    if (parents[child] == node && distances[child] != Double.POSITIVE_INFINITY) {
+                        distances[child] = Double.POSITIVE_INFINITY;
+                        affected.add(child);
+                    }
+                }
+                parents[node] = -1;
+            }
+        }
+
+        // Re-attach detached nodes through their best neighbour outside the detached region
+        for (int i = 0; i < affected.size(); i++) {
+            int node = affected.get(i);
+            double best = Double.POSITIVE_INFINITY;
+            int bestParent = -1;
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                double distance = distances[graph.neighbor(node, k)] + graph.weight(node, k);
+                if (distance < best) {
+                    best = distance;
+                    bestParent = graph.neighbor(node, k);
+                }
+            }
+            if (bestParent != -1) {
+                improve(node, best, bestParent, distances, parents, context);
+            }
+        }
+
+        // Shortened and added paths
+        for (int i = 0; i < changedEdges.length; i += 2) {
+            int from = changedEdges[i];
+            int to = changedEdges[i + 1];
+            double distance = distances[from] + graph.distance(from, to);
+            if (distance < distances[to]) {
+                improve(to, distance, from, distances, parents, context);
+            }
+        }
+
+        // Every queued key is at least the last one settled, so no node is settled twice
+        while (!context.isQueueEmpty()) {
+            int node = context.poll();
+            double distance = distances[node];
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                int neighbor = graph.neighbor(node, k);
+                double candidate = distance + graph.weight(node, k);
+                if (candidate < distances[neighbor]) {
+                    improve(neighbor, candidate, node, distances, parents, context);
+                }
+            }
+        }
+
+        tree.version = graph.getVersion();
+        repairs.increment();
+        repairedNodes.add(affected.size() + context.getSettledCount());
+    }
+
+    private static void improve(int node, double distance, int parent, double[] distances, int[] parents,
+                                SearchContext context) {
+        distances[node] = distance;
+        parents[node] = parent;
+        context.update(node, distance, parent, distance);
+    }
+
+    private static int[] searchWithoutTree(GraphSnapshot graph, int source, int destination,
+                                           SearchContext context) {
+        if (RoutingEngine.dijkstra(graph, source, destination, context) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int[] path = new int[RoutingEngine.pathLength(context, destination)];
+        int index = path.length;
+        for (int node = destination; node != -1; node = context.parent(node)) {
+            path[--index] = node;
+        }
+        return path;
+    }
+
+    public void clear() {
+        synchronized (trees) {
+            trees.clear();
+        }
+    }
+
+    // Number of origins with a tree
+    public int size() {
+        synchronized (trees) {
+            return trees.size();
+        }
+    }
+
+    public int getMaxOrigins() {
+        return maxOrigins;
+    }
+
+    /**
+     * Trees computed from scratch: first queries from an origin, and
+     * origins whose tree fell behind the change log.
+     */
+    public long getBuildCount() {
+        return builds.sum();
+    }
+
+    public long getRepairCount() {
+        return repairs.sum();
+    }
+
+    /**
+     * Nodes detached or re-settled by all repairs so far, which is what
+     * they cost.
+     */
+    public long getRepairedNodeCount() {
+        return repairedNodes.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Counter values as name/value pairs, for metrics scrapers.
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("builds", getBuildCount());
+        statistics.put("repairs", getRepairCount());
+        statistics.put("repairedNodes", getRepairedNodeCount());
+        statistics.put("evictions", getEvictionCount());
+        statistics.put("size", (long) size());
+        return statistics;
+    }
+
+    private static final class Tree {
+        private final int source;
+        private long version;
+        private double[] distances;
+        private int[] parents;
+
+        Tree(int source) {
+            this.source = source;
+        }
+
+        // Locations added since the tree was built start out unreachable
+        void ensureCapacity(int nodeCount) {
+            int oldCount = distances.length;
+            if (nodeCount > oldCount) {
+                distances = Arrays.copyOf(distances, nodeCount);
+                parents = Arrays.copyOf(parents, nodeCount);
+                Arrays.fill(distances, oldCount, nodeCount, Double.POSITIVE_INFINITY);
+                Arrays.fill(parents, oldCount, nodeCount, -1);
+            }
+        }
+
+        int[] pathTo(int destination) {
+            if (destination >= distances.length || distances[destination] == Double.POSITIVE_INFINITY) {
+                return null;
+            }
+            int length = 0;
+            for (int node = destination; node != -1; node = parents[node]) {
+                length++;
+            }
+            int[] path = new int[length];
+            for (int node = destination; node != -1; node = parents[node]) {
+                path[--length] = node;
+            }
+            return path;
+        }
+    }
+
+    private static final class ChangeSet {
+        private final long version;
+        private final int[] edges;
+
+        ChangeSet(long version, int[] edges) {
+            this.version = version;
+            this.edges = edges;
+        }
+    }
+}
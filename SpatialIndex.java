@@ -0,0 +1,391 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Static k-d tree over node coordinates, stored as an implicit balanced
+ * tree in primitive arrays: the median of every range is its root, split on
+ * latitude or longitude, whichever is wider. Distances are great-circle
+ * meters; pruning uses lower bounds that stay valid near the poles and
+ * across the antimeridian. Nodes with NaN coordinates are left out.
+ */
+public final class SpatialIndex {
+    private static final byte LATITUDE = 0;
+    private static final byte LONGITUDE = 1;
+    // Keeps the split bounds below the haversine distances they bound despite rounding
+    private static final double BOUND_SLACK = 1 - 1e-9;
+
+    private final RoutingGraph graph;
+    private final int[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final byte[] axes;
+
+    private SpatialIndex(RoutingGraph graph, int[] ids, double[] latitudes, double[] longitudes, byte[] axes) {
+        this.graph = graph;
+        this.ids = ids;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.axes = axes;
+    }
+
+    public static SpatialIndex build(RoutingGraph graph) {
+        int nodeCount = graph.getNodeCount();
+        IntList valid = new IntList(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            if (!Double.isNaN(graph.getLatitude(node)) && !Double.isNaN(graph.getLongitude(node))) {
+                valid.add(node);
+            }
+        }
+
+        int size = valid.size();
+        int[] ids = valid.toArray();
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = graph.getLatitude(ids[i]);
+            longitudes[i] = graph.getLongitude(ids[i]);
+        }
+
+        byte[] axes = new byte[size];
+        new Builder(ids, latitudes, longitudes, axes).build(0, size);
+        return new SpatialIndex(graph, ids, latitudes, longitudes, axes);
+    }
+
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Closest node to the point, or -1 when the index is empty.
+     */
+    public int nearest(double latitude, double longitude) {
+        int[] nearest = nearest(latitude, longitude, 1, null);
+        return nearest.length == 0 ? -1 : nearest[0];
+    }
+
+    public int[] nearest(double latitude, double longitude, int k) {
+        return nearest(latitude, longitude, k, null);
+    }
+
+    /**
+     * Up to k nodes accepted by filter (null accepts all), closest first.
+     */
+    public int[] nearest(double latitude, double longitude, int k, IntPredicate filter) {
+        if (k <= 0 || ids.length == 0) {
+            return new int[0];
+        }
+        NearestSearch search = new NearestSearch(latitude, longitude, Math.min(k, ids.length), filter);
+        search.visit(0, ids.length);
+        return search.result();
+    }
+
+    /**
+     * Nodes within radiusMeters of the point, closest first.
+     */
+    public int[] withinRadius(double latitude, double longitude, double radiusMeters) {
+        IntList found = new IntList(16);
+        DoubleList distances = new DoubleList(16);
+        collectWithin(0, ids.length, latitude, longitude, radiusMeters, found, distances);
+        return sortByDistance(found, distances);
+    }
+
+    /**
+     * Nodes inside the box, in no particular order. A box with
+     * minLongitude greater than maxLongitude wraps across the antimeridian.
+     */
+    public int[] withinBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        IntList found = new IntList(16);
+        if (minLongitude <= maxLongitude) {
+            collectInBox(0, ids.length, minLatitude, minLongitude, maxLatitude, maxLongitude, found);
+        } else {
+            collectInBox(0, ids.length, minLatitude, minLongitude, maxLatitude, 180.0, found);
+            collectInBox(0, ids.length, minLatitude, -180.0, maxLatitude, maxLongitude, found);
+        }
+        return found.toArray();
+    }
+
+    private void collectWithin(int from, int to, double latitude, double longitude, double radius,
+                               IntList found, DoubleList distances) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        double distance = GeoMath.haversine(latitude, longitude, latitudes[middle], longitudes[middle]);
+        if (distance <= radius) {
+            found.add(ids[middle]);
+            distances.add(distance);
+        }
+
+        boolean lowSide = isLowSide(middle, latitude, longitude);
+        double bound = splitBound(middle, latitude, longitude, lowSide);
+        if (lowSide) {
+            collectWithin(from, middle, latitude, longitude, radius, found, distances);
+            if (bound <= radius) {
+                collectWithin(middle + 1, to, latitude, longitude, radius, found, distances);
+            }
+        } else {
+            collectWithin(middle + 1, to, latitude, longitude, radius, found, distances);
+            if (bound <= radius) {
+                collectWithin(from, middle, latitude, longitude, radius, found, distances);
+            }
+        }
+    }
+
+    private void collectInBox(int from, int to, double minLatitude, double minLongitude,
+                              double maxLatitude, double maxLongitude, IntList found) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        double latitude = latitudes[middle];
+        double longitude = longitudes[middle];
+        if (latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude) {
+            found.add(ids[middle]);
+        }
+
+        double split = axes[middle] == LATITUDE ? latitude : longitude;
+        double min = axes[middle] == LATITUDE ? minLatitude : minLongitude;
+        double max = axes[middle] == LATITUDE ? maxLatitude : maxLongitude;
+        if (min <= split) {
+            collectInBox(from, middle, minLatitude, minLongitude, maxLatitude, maxLongitude, found);
+        }
+        if (max >= split) {
+            collectInBox(middle + 1, to, minLatitude, minLongitude, maxLatitude, maxLongitude, found);
+        }
+    }
+
+    // Whether the query point falls on the low (left) side of the split at middle
+    private boolean isLowSide(int middle, double latitude, double longitude) {
+        return axes[middle] == LATITUDE ? latitude < latitudes[middle] : longitude < longitudes[middle];
+    }
+
+    /**
+     * Lower bound in meters on the distance from the query point to any node
+     * on the far side of the split at middle.
+     */
+    private double splitBound(int middle, double latitude, double longitude, boolean lowSide) {
+        if (axes[middle] == LATITUDE) {
+            // Two points are never closer than their difference in latitude
+            return GeoMath.EARTH_RADIUS_METERS * Math.toRadians(Math.abs(latitude - latitudes[middle])) * BOUND_SLACK;
+        }
+
+        // Smallest longitude gap to the far side, which may be reached across the antimeridian
+        double split = longitudes[middle];
+        double gap = lowSide ? Math.min(split - longitude, longitude + 180.0)
+                : Math.min(longitude - split, 180.0 - longitude);
+        if (gap <= 0) {
+            return 0.0;
+        }
+        // Distance to the nearest meridian that far away; past 90 degrees the pole is closer
+        double sine = gap >= 90.0 ? 1.0 : Math.sin(Math.toRadians(gap));
+        double cosine = Math.cos(Math.toRadians(latitude));
+        return GeoMath.EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.max(0.0, cosine * sine))) * BOUND_SLACK;
+    }
+
+    private static int[] sortByDistance(IntList found, DoubleList distances) {
+        int size = found.size();
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distances.get(a), distances.get(b)));
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = found.get(order[i]);
+        }
+        return sorted;
+    }
+
+    private final class NearestSearch {
+        private final double latitude;
+        private final double longitude;
+        private final IntPredicate filter;
+        // Max-heap on distance holding the best k candidates so far
+        private final int[] heapIds;
+        private final double[] heapDistances;
+        private int heapSize;
+
+        NearestSearch(double latitude, double longitude, int k, IntPredicate filter) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.filter = filter;
+            this.heapIds = new int[k];
+            this.heapDistances = new double[k];
+        }
+
+        void visit(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            if (filter == null || filter.test(ids[middle])) {
+                offer(ids[middle], GeoMath.haversine(latitude, longitude, latitudes[middle], longitudes[middle]));
+            }
+
+            boolean lowSide = isLowSide(middle, latitude, longitude);
+            if (lowSide) {
+                visit(from, middle);
+            } else {
+                visit(middle + 1, to);
+            }
+            if (heapSize < heapIds.length || splitBound(middle, latitude, longitude, lowSide) < heapDistances[0]) {
+                if (lowSide) {
+                    visit(middle + 1, to);
+                } else {
+                    visit(from, middle);
+                }
+            }
+        }
+
+        private void offer(int id, double distance) {
+            if (heapSize < heapIds.length) {
+                int position = heapSize++;
+                while (position > 0) {
+                    int parent = (position - 1) >>> 1;
+                    if (heapDistances[parent] >= distance) {
+                        break;
+                    }
+                    heapIds[position] = heapIds[parent];
+                    heapDistances[position] = heapDistances[parent];
+                    position = parent;
+                }
+                heapIds[position] = id;
+                heapDistances[position] = distance;
+            } else if (distance < heapDistances[0]) {
+                siftDown(id, distance);
+            }
+        }
+
+        private void siftDown(int id, double distance) {
+            int position = 0;
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapDistances[child + 1] > heapDistances[child]) {
+                    child++;
+                }
+                if (heapDistances[child] <= distance) {
+                    break;
+                }
+                heapIds[position] = heapIds[child];
+                heapDistances[position] = heapDistances[child];
+                position = child;
+            }
+            heapIds[position] = id;
+            heapDistances[position] = distance;
+        }
+
+        int[] result() {
+            // Pop the max-heap from the back so the closest node ends up first
+            int[] result = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                result[i] = heapIds[0];
+                int lastId = heapIds[heapSize - 1];
+                double lastDistance = heapDistances[heapSize - 1];
+                heapSize--;
+                if (heapSize > 0) {
+                    siftDown(lastId, lastDistance);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Builder {
+        private final int[] ids;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final byte[] axes;
+
+        Builder(int[] ids, double[] latitudes, double[] longitudes, byte[] axes) {
+            this.ids = ids;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.axes = axes;
+        }
+
+        void build(int from, int to) {
+            if (to - from <= 1) {
+                return;
+            }
+            byte axis = widerAxis(from, to);
+            int middle = (from + to) >>> 1;
+            select(from, to - 1, middle, axis);
+            axes[middle] = axis;
+            build(from, middle);
+            build(middle + 1, to);
+        }
+
+        private byte widerAxis(int from, int to) {
+            double minLatitude = Double.POSITIVE_INFINITY;
+            double maxLatitude = Double.NEGATIVE_INFINITY;
+            double minLongitude = Double.POSITIVE_INFINITY;
+            double maxLongitude = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                minLatitude = Math.min(minLatitude, latitudes[i]);
+                maxLatitude = Math.max(maxLatitude, latitudes[i]);
+                minLongitude = Math.min(minLongitude, longitudes[i]);
+                maxLongitude = Math.max(maxLongitude, longitudes[i]);
+            }
+            // A degree of longitude shrinks with the cosine of the latitude
+            double middleLatitude = Math.toRadians((minLatitude + maxLatitude) * 0.5);
+            double longitudeSpread = (maxLongitude - minLongitude) * Math.cos(middleLatitude);
+            return longitudeSpread > maxLatitude - minLatitude ? LONGITUDE : LATITUDE;
+        }
+
+        private double key(int index, byte axis) {
+            return axis == LATITUDE ? latitudes[index] : longitudes[index];
+        }
+
+        // Quickselect with a three-way partition, so runs of equal coordinates stay linear
+        private void select(int left, int right, int k, byte axis) {
+            while (left < right) {
+                double pivot = median(key(left, axis), key((left + right) >>> 1, axis), key(right, axis));
+                int less = left;
+                int greater = right;
+                int i = left;
+                while (i <= greater) {
+                    double value = key(i, axis);
+                    if (value < pivot) {
+                        swap(i++, less++);
+                    } else if (value > pivot) {
+                        swap(i, greater--);
+                    } else {
+                        i++;
+                    }
+                }
+
+                if (k < less) {
+                    right = less - 1;
+                } else if (k > greater) {
+                    left = greater + 1;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static double median(double a, double b, double c) {
+            return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double latitude = latitudes[a];
+            latitudes[a] = latitudes[b];
+            latitudes[b] = latitude;
+            double longitude = longitudes[a];
+            longitudes[a] = longitudes[b];
+            longitudes[b] = longitude;
+        }
+    }
+}
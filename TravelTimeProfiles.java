@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time-of-day travel times for directed edges. Each profile is a periodic
+ * piecewise-linear function from departure minute (0 to 1440) to travel
+ * minutes. All breakpoints live in two flat arrays, and a lookup is one hash
+ * probe plus a binary search. Edges without a profile fall back to
+ * {@link CampusMap#estimateEdgeTravelTime(double)}.
+ *
+ * <p>Every profile satisfies the FIFO property: leaving later never gets you
+ * there earlier. That is what makes a plain Dijkstra over arrival times exact.
+ */
+public final class TravelTimeProfiles {
+    public static final double MINUTES_PER_DAY = 1440.0;
+
+    private static final TravelTimeProfiles EMPTY = new Builder().build();
+
+    private final LongIntMap profileIndex;
+    private final long[] keys;
+    private final int[] offsets;
+    private final double[] departures;
+    private final double[] travelTimes;
+
+    private TravelTimeProfiles(LongIntMap profileIndex, long[] keys, int[] offsets,
+                               double[] departures, double[] travelTimes) {
+        this.profileIndex = profileIndex;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.departures = departures;
+        this.travelTimes = travelTimes;
+    }
+
+    public static TravelTimeProfiles empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder that starts out with every profile of this instance.
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        for (int profile = 0; profile < keys.length; profile++) {
+            int from = offsets[profile];
+            int to = offsets[profile + 1];
+            builder.index.put(keys[profile], profile);
+            builder.keys.add(keys[profile]);
+            builder.profiles.add(new double[][] {
+                    Arrays.copyOfRange(departures, from, to), Arrays.copyOfRange(travelTimes, from, to)});
+        }
+        return builder;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean hasProfile(int source, int destination) {
+        return profileIndex.get(edgeKey(source, destination)) >= 0;
+    }
+
+    /**
+     * Travel minutes for the edge source -> destination when leaving at
+     * departureMinute. Minutes past the first day wrap around.
+     */
+    public double travelTime(int source, int destination, double distance, double departureMinute) {
+        int profile = keys.length == 0 ? -1 : profileIndex.get(edgeKey(source, destination));
+        if (profile < 0) {
+            return CampusMap.estimateEdgeTravelTime(distance);
+        }
+        return evaluate(profile, departureMinute);
+    }
+
+    private double evaluate(int profile, double departureMinute) {
+        int from = offsets[profile];
+        int to = offsets[profile + 1];
+        double time = departureMinute % MINUTES_PER_DAY;
+        if (time < 0) {
+            time += MINUTES_PER_DAY;
+        }
+
+        int index = Arrays.binarySearch(departures, from, to, time);
+        if (index >= 0) {
+            return travelTimes[index];
+        }
+
+        // Interpolate between the surrounding breakpoints, wrapping across midnight
+        int next = -index - 1;
+        int previous = next - 1;
+        double previousTime;
+        double nextTime;
+        if (previous < from) {
+            previous = to - 1;
+            previousTime = departures[previous] - MINUTES_PER_DAY;
+        } else {
+            previousTime = departures[previous];
+        }
+        if (next == to) {
+            next = from;
+            nextTime = departures[next] + MINUTES_PER_DAY;
+        } else {
+            nextTime = departures[next];
+        }
+
+        double fraction = (time - previousTime) / (nextTime - previousTime);
+        return travelTimes[previous] + (travelTimes[next] - travelTimes[previous]) * fraction;
+    }
+
+    static long edgeKey(int source, int destination) {
+        return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    public static final class Builder {
+        private final LongIntMap index = new LongIntMap(16);
+        private final List<Long> keys = new ArrayList<>();
+        private final List<double[][]> profiles = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the profile of the directed edge source -> destination,
+         * replacing any earlier one. departureMinutes must be strictly
+         * increasing within [0, 1440) and the function, including the segment
+         * that wraps past midnight, must never fall faster than one minute of
+         * travel time per minute of departure time.
+         */
+        public Builder put(int source, int destination, double[] departureMinutes, double[] travelMinutes) {
+            validate(departureMinutes, travelMinutes);
+            double[][] profile = {departureMinutes.clone(), travelMinutes.clone()};
+
+            long key = edgeKey(source, destination);
+            int existing = index.get(key);
+            if (existing >= 0) {
+                profiles.set(existing, profile);
+            } else {
+                index.put(key, profiles.size());
+                keys.add(key);
+                profiles.add(profile);
+            }
+            return this;
+        }
+
+        public TravelTimeProfiles build() {
+            int[] offsets = new int[profiles.size() + 1];
+            for (int profile = 0; profile < profiles.size(); profile++) {
+                offsets[profile + 1] = offsets[profile] + profiles.get(profile)[0].length;
+            }
+
+            double[] departures = new double[offsets[profiles.size()]];
+            double[] travelTimes = new double[departures.length];
+            long[] profileKeys = new long[profiles.size()];
+            LongIntMap profileIndex = new LongIntMap(profiles.size());
+            for (int profile = 0; profile < profiles.size(); profile++) {
+                double[][] points = profiles.get(profile);
+                System.arraycopy(points[0], 0, departures, offsets[profile], points[0].length);
+                System.arraycopy(points[1], 0, travelTimes, offsets[profile], points[1].length);
+                profileKeys[profile] = keys.get(profile);
+                profileIndex.put(profileKeys[profile], profile);
+            }
+            return new TravelTimeProfiles(profileIndex, profileKeys, offsets, departures, travelTimes);
+        }
+
+        private static void validate(double[] departureMinutes, double[] travelMinutes) {
+            int count = departureMinutes.length;
+            if (count == 0 || count != travelMinutes.length) {
+                throw new IllegalArgumentException("A profile needs matching, non-empty departure and travel times");
+            }
+            for (int i = 0; i < count; i++) {
+                double departure = departureMinutes[i];
+                if (!(departure >= 0 && departure < MINUTES_PER_DAY)) {
+                    throw new IllegalArgumentException("Departure minute out of range: " + departure);
+                }
+                if (i > 0 && departure <= departureMinutes[i - 1]) {
+                    throw new IllegalArgumentException("Departure minutes must be strictly increasing");
+                }
+                if (!(travelMinutes[i] >= 0 && travelMinutes[i] < Double.POSITIVE_INFINITY)) {
+                    throw new IllegalArgumentException("Travel time must be finite and non-negative: "
+                            + travelMinutes[i]);
+                }
+            }
+
+            // FIFO: arrival = departure + travel time must not decrease on any segment
+            for (int i = 0; i < count; i++) {
+                int next = (i + 1) % count;
+                double span = count == 1 ? MINUTES_PER_DAY
+                        : departureMinutes[next] - departureMinutes[i] + (next == 0 ? MINUTES_PER_DAY : 0);
+                if (travelMinutes[next] - travelMinutes[i] < -span) {
+                    throw new IllegalArgumentException("Profile violates FIFO after departure minute "
+                            + departureMinutes[i]);
+                }
+            }
+        }
+    }
+}
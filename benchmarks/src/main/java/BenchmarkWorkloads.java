@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Prepared benchmark operations over synthetic graphs. The JMH suite has
+ * to live in a named package, which cannot see the routing classes in the
+ * default package, so it fetches these by reflection once per trial and
+ * measures only the returned JDK functional interfaces. The int argument
+ * picks the query, cycling through a fixed random set so every run sees the
+ * same mix.
+ */
+public final class BenchmarkWorkloads {
+    static final long SEED = 42;
+    private static final int QUERY_COUNT = 1024;
+
+    private BenchmarkWorkloads() {
+    }
+
+    /**
+     * Builds a fresh map from a pre-generated graph, either in one update
+     * or with one addLocation or addDistance call per element.
+     */
+    public static Supplier<Object> build(String shape, int nodeCount, boolean batched) {
+        SyntheticGraph graph = SyntheticGraph.generate(shape, nodeCount, SEED);
+        return batched ? graph::build : graph::buildIncrementally;
+    }
+
+    /**
+     * findShortestPath between random connected pairs, with the strategy's
+     * preprocessing done up front.
+     */
+    public static IntFunction<Object> shortestPath(String shape, int nodeCount, String strategyName) {
+        CampusMap campusMap = SyntheticGraph.generate(shape, nodeCount, SEED).build();
+        RoutingStrategy strategy = RoutingStrategy.valueOf(strategyName);
+        prepare(campusMap, strategy);
+        String[][] pairs = connectedPairs(campusMap, QUERY_COUNT);
+        return query -> {
+            String[] pair = pairs[query & (QUERY_COUNT - 1)];
+            return campusMap.findShortestPath(pair[0], pair[1], strategy);
+        };
+    }
+
+    /**
+     * calculateTotalDistance and calculateEstimatedArrivalTime over
+     * precomputed shortest paths.
+     */
+    public static IntFunction<Object> routeMetrics(String shape, int nodeCount) {
+        CampusMap campusMap = SyntheticGraph.generate(shape, nodeCount, SEED).build();
+        List<List<CampusMap.Location>> routes = shortestPaths(campusMap, connectedPairs(campusMap, QUERY_COUNT));
+        return query -> {
+            List<CampusMap.Location> route = routes.get(query & (QUERY_COUNT - 1));
+            return campusMap.calculateTotalDistance(route) + campusMap.calculateEstimatedArrivalTime(route);
+        };
+    }
+
+    /**
+     * filterRoutesByDistance over routeCount candidate routes. Each call
+     * ranks a fresh copy, since the method sorts its argument in place.
+     */
+    public static IntFunction<Object> filterRoutesByDistance(String shape, int nodeCount, int routeCount) {
+        CampusMap campusMap = SyntheticGraph.generate(shape, nodeCount, SEED).build();
+        List<List<CampusMap.Location>> routes = candidateRoutes(campusMap, routeCount);
+        return query -> campusMap.filterRoutesByDistance(new ArrayList<>(routes));
+    }
+
+    /**
+     * searchRoutesByLandmark over routeCount candidate routes, cycling
+     * through landmarks taken from the routes themselves.
+     */
+    public static IntFunction<Object> searchRoutesByLandmark(String shape, int nodeCount, int routeCount) {
+        CampusMap campusMap = SyntheticGraph.generate(shape, nodeCount, SEED).build();
+        List<List<CampusMap.Location>> routes = candidateRoutes(campusMap, routeCount);
+        Random random = new Random(SEED);
+        String[] landmarks = new String[QUERY_COUNT];
+        for (int i = 0; i < landmarks.length; i++) {
+            List<CampusMap.Location> route = routes.get(random.nextInt(routes.size()));
+            landmarks[i] = route.get(random.nextInt(route.size())).getName();
+        }
+        return query -> campusMap.searchRoutesByLandmark(routes, landmarks[query & (QUERY_COUNT - 1)]);
+    }
+
+    private static void prepare(CampusMap campusMap, RoutingStrategy strategy) {
+        switch (strategy) {
+            case A_STAR:
+                campusMap.getGeoHeuristic();
+                break;
+            case ALT:
+                campusMap.getLandmarkTable();
+                break;
+            case CONTRACTION_HIERARCHY:
+                campusMap.getContractionHierarchy();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Pairs inside the largest of a few random components, so every query finds a path
+    private static String[][] connectedPairs(CampusMap campusMap, int count) {
+        GraphSnapshot graph = campusMap.snapshot();
+        Random random = new Random(SEED);
+        IntList component = new IntList(0);
+        for (int attempt = 0; attempt < 4 && component.size() < graph.getNodeCount() / 2; attempt++) {
+            SearchContext context = SearchContext.forThread(graph.getNodeCount());
+            RoutingEngine.dijkstraAll(graph, random.nextInt(graph.getNodeCount()), context);
+            IntList reached = new IntList(graph.getNodeCount());
+            for (int id = 0; id < graph.getNodeCount(); id++) {
+                if (context.isReached(id)) {
+                    reached.add(id);
+                }
+            }
+            if (reached.size() > component.size()) {
+                component = reached;
+            }
+        }
+
+        String[][] pairs = new String[count][];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = new String[] {
+                    graph.getName(component.get(random.nextInt(component.size()))),
+                    graph.getName(component.get(random.nextInt(component.size())))};
+        }
+        return pairs;
+    }
+
+    private static List<List<CampusMap.Location>> shortestPaths(CampusMap campusMap, String[][] pairs) {
+        List<List<CampusMap.Location>> routes = new ArrayList<>(pairs.length);
+        for (String[] pair : pairs) {
+            routes.add(campusMap.findShortestPath(pair[0], pair[1]));
+        }
+        return routes;
+    }
+
+    // Realistic candidates: the best few alternatives for a series of random pairs
+    private static List<List<CampusMap.Location>> candidateRoutes(CampusMap campusMap, int routeCount) {
+        List<List<CampusMap.Location>> routes = new ArrayList<>(routeCount);
+        for (String[] pair : connectedPairs(campusMap, routeCount)) {
+            List<List<CampusMap.Location>> alternatives = campusMap.findAlternativeRoutes(pair[0], pair[1], 4);
+            for (int i = 0; i < alternatives.size() && routes.size() < routeCount; i++) {
+                routes.add(alternatives.get(i));
+            }
+            if (routes.size() == routeCount) {
+                break;
+            }
+        }
+        return routes;
+    }
+}
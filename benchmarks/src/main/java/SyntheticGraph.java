@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reproducible synthetic road networks for benchmarks and load tests. The
+ * nodes and paths are generated up front, so building a CampusMap from them
+ * measures only addLocation and addDistance. Locations are named "n" + id
+ * and spread around the campus at roughly 100 m spacing; every distance is
+ * at least the straight-line distance, so the A* heuristic stays unscaled.
+ */
+public final class SyntheticGraph {
+    private static final double ORIGIN_LATITUDE = 5.6505;
+    private static final double ORIGIN_LONGITUDE = -0.1962;
+    private static final double SPACING_DEGREES = 0.0009; // About 100 m
+
+    private final String shape;
+    private final String[] names;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] sources;
+    private final int[] destinations;
+    private final double[] distances;
+
+    private SyntheticGraph(String shape, double[] latitudes, double[] longitudes, IntList sources,
+                           IntList destinations, DoubleList distances) {
+        this.shape = shape;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.sources = sources.toArray();
+        this.destinations = destinations.toArray();
+        this.distances = distances.toArray();
+        names = new String[latitudes.length];
+        Arrays.setAll(names, id -> "n" + id);
+    }
+
+    /**
+     * Saves a synthetic graph for load tests, e.g. "grid 100000 grid.graph",
+     * which RoutingServer can then serve with --graph.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: SyntheticGraph grid|geometric|scalefree nodes file");
+        }
+        generate(args[0], Integer.parseInt(args[1]), BenchmarkWorkloads.SEED).build().save(Path.of(args[2]));
+    }
+
+    /**
+     * One of "grid", "geometric" or "scalefree" with about nodeCount nodes.
+     */
+    public static SyntheticGraph generate(String shape, int nodeCount, long seed) {
+        switch (shape) {
+            case "grid":
+                return grid(nodeCount, seed);
+            case "geometric":
+                return randomGeometric(nodeCount, 6.0, seed);
+            case "scalefree":
+                return scaleFree(nodeCount, 2, seed);
+            default:
+                throw new IllegalArgumentException("Unknown graph shape: " + shape);
+        }
+    }
+
+    /**
+     * Square street grid, the largest that fits in nodeCount nodes, with
+     * every block 0-30% longer than the straight line.
+     */
+    public static SyntheticGraph grid(int nodeCount, long seed) {
+        Random random = new Random(seed);
+        int width = Math.max(1, (int) Math.sqrt(nodeCount));
+        int size = width * width;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int id = 0; id < size; id++) {
+            latitudes[id] = ORIGIN_LATITUDE + (id / width) * SPACING_DEGREES;
+            longitudes[id] = ORIGIN_LONGITUDE + (id % width) * SPACING_DEGREES;
+        }
+
+        IntList sources = new IntList(2 * size);
+        IntList destinations = new IntList(2 * size);
+        DoubleList distances = new DoubleList(2 * size);
+        for (int id = 0; id < size; id++) {
+            if (id % width + 1 < width) {
+                addPath(id, id + 1, latitudes, longitudes, 1.0 + 0.3 * random.nextDouble(),
+                        sources, destinations, distances);
+            }
+            if (id + width < size) {
+                addPath(id, id + width, latitudes, longitudes, 1.0 + 0.3 * random.nextDouble(),
+                        sources, destinations, distances);
+            }
+        }
+        return new SyntheticGraph("grid", latitudes, longitudes, sources, destinations, distances);
+    }
+
+    /**
+     * Random geometric graph: uniform points in a square, each joined to
+     * every point within the radius that gives the requested average
+     * degree. Sparse corners can leave small components.
+     */
+    public static SyntheticGraph randomGeometric(int nodeCount, double averageDegree, long seed) {
+        Random random = new Random(seed);
+        double side = Math.sqrt(nodeCount) * SPACING_DEGREES;
+        double[] latitudes = new double[nodeCount];
+        double[] longitudes = new double[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            latitudes[id] = ORIGIN_LATITUDE + random.nextDouble() * side;
+            longitudes[id] = ORIGIN_LONGITUDE + random.nextDouble() * side;
+        }
+
+        // Bucket the points into radius-sized cells so only neighbouring cells are compared
+        double radius = SPACING_DEGREES * Math.sqrt(averageDegree / Math.PI);
+        int cellsPerSide = Math.max(1, (int) (side / radius));
+        int[] cellStarts = new int[cellsPerSide * cellsPerSide + 1];
+        int[] cells = new int[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            cells[id] = cellOf(latitudes[id], longitudes[id], side, cellsPerSide);
+            cellStarts[cells[id] + 1]++;
+        }
+        for (int cell = 0; cell < cellsPerSide * cellsPerSide; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        int[] byCell = new int[nodeCount];
+        int[] next = Arrays.copyOf(cellStarts, cellStarts.length - 1);
+        for (int id = 0; id < nodeCount; id++) {
+            byCell[next[cells[id]]++] = id;
+        }
+
+        int expectedPaths = (int) (nodeCount * averageDegree / 2);
+        IntList sources = new IntList(expectedPaths);
+        IntList destinations = new IntList(expectedPaths);
+        DoubleList distances = new DoubleList(expectedPaths);
+        for (int id = 0; id < nodeCount; id++) {
+            int row = cells[id] / cellsPerSide;
+            int column = cells[id] % cellsPerSide;
+            for (int r = Math.max(0, row - 1); r <= Math.min(cellsPerSide - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(cellsPerSide - 1, column + 1); c++) {
+                    int cell = r * cellsPerSide + c;
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        int other = byCell[i];
+                        if (other > id && Math.hypot(latitudes[id] - latitudes[other],
+                                longitudes[id] - longitudes[other]) <= radius) {
+                            addPath(id, other, latitudes, longitudes, 1.0, sources, destinations, distances);
+                        }
+                    }
+                }
+            }
+        }
+        return new SyntheticGraph("geometric", latitudes, longitudes, sources, destinations, distances);
+    }
+
+    private static int cellOf(double latitude, double longitude, double side, int cellsPerSide) {
+        int row = Math.min(cellsPerSide - 1, (int) ((latitude - ORIGIN_LATITUDE) / side * cellsPerSide));
+        int column = Math.min(cellsPerSide - 1, (int) ((longitude - ORIGIN_LONGITUDE) / side * cellsPerSide));
+        return row * cellsPerSide + column;
+    }
+
+    /**
+     * Barabasi-Albert preferential attachment: every new node joins
+     * edgesPerNode existing nodes picked in proportion to their degree,
+     * which gives a connected graph with a few very busy hubs.
+     */
+    public static SyntheticGraph scaleFree(int nodeCount, int edgesPerNode, long seed) {
+        Random random = new Random(seed);
+        double side = Math.sqrt(nodeCount) * SPACING_DEGREES;
+        double[] latitudes = new double[nodeCount];
+        double[] longitudes = new double[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            latitudes[id] = ORIGIN_LATITUDE + random.nextDouble() * side;
+            longitudes[id] = ORIGIN_LONGITUDE + random.nextDouble() * side;
+        }
+
+        IntList sources = new IntList(nodeCount * edgesPerNode);
+        IntList destinations = new IntList(nodeCount * edgesPerNode);
+        DoubleList distances = new DoubleList(nodeCount * edgesPerNode);
+        // Every path end point once per path, so a uniform pick is a degree-weighted pick
+        IntList endpoints = new IntList(2 * nodeCount * edgesPerNode);
+        int[] picked = new int[edgesPerNode];
+        for (int id = 1; id < nodeCount; id++) {
+            int count = 0;
+            for (int attempt = 0; count < Math.min(edgesPerNode, id) && attempt < 8 * edgesPerNode; attempt++) {
+                int target = endpoints.isEmpty()
+                        ? random.nextInt(id) : endpoints.get(random.nextInt(endpoints.size()));
+                boolean duplicate = false;
+                for (int i = 0; i < count; i++) {
+                    duplicate |= picked[i] == target;
+                }
+                if (!duplicate) {
+                    picked[count++] = target;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                addPath(id, picked[i], latitudes, longitudes, 1.0 + random.nextDouble(),
+                        sources, destinations, distances);
+                endpoints.add(id);
+                endpoints.add(picked[i]);
+            }
+        }
+        return new SyntheticGraph("scalefree", latitudes, longitudes, sources, destinations, distances);
+    }
+
+    private static void addPath(int source, int destination, double[] latitudes, double[] longitudes, double detour,
+                                IntList sources, IntList destinations, DoubleList distances) {
+        sources.add(source);
+        destinations.add(destination);
+        distances.add(detour * GeoMath.haversine(latitudes[source], longitudes[source],
+                latitudes[destination], longitudes[destination]));
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public int getNodeCount() {
+        return names.length;
+    }
+
+    public int getPathCount() {
+        return sources.length;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Builds the map in a single update, the way bulk loads should.
+     */
+    public CampusMap build() {
+        CampusMap campusMap = new CampusMap();
+        campusMap.update(changes -> {
+            for (int id = 0; id < names.length; id++) {
+                changes.addLocation(names[id], latitudes[id], longitudes[id]);
+            }
+            for (int i = 0; i < sources.length; i++) {
+                changes.addDistance(sources[i], destinations[i], distances[i]);
+            }
+        });
+        return campusMap;
+    }
+
+    /**
+     * Builds the map one addLocation and addDistance call at a time, each
+     * publishing its own snapshot, the way the demo and older callers do.
+     */
+    public CampusMap buildIncrementally() {
+        CampusMap campusMap = new CampusMap();
+        for (int id = 0; id < names.length; id++) {
+            campusMap.addLocation(names[id], latitudes[id], longitudes[id]);
+        }
+        for (int i = 0; i < sources.length; i++) {
+            campusMap.addDistance(names[sources[i]], names[destinations[i]], distances[i]);
+        }
+        return campusMap;
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to build a map from a pre-generated graph, in one update batch or
+ * with one published addLocation/addDistance call per element.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphBuildBenchmark {
+    @Param({"grid", "geometric", "scalefree"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    @Param({"true", "false"})
+    public boolean batched;
+
+    private Supplier<Object> build;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        build = Workloads.create("build", shape, nodes, batched);
+    }
+
+    @Benchmark
+    public Object build() {
+        return build.get();
+    }
+}
@@ -0,0 +1,24 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Per-thread position in a workload's query set. Threads start at
+ * different offsets so they do not all run the same query at once.
+ */
+@State(Scope.Thread)
+public class QueryCursor {
+    private int next;
+
+    @Setup
+    public void setUp(ThreadParams threads) {
+        next = threads.getThreadIndex() * 97;
+    }
+
+    int advance() {
+        return next++;
+    }
+}
@@ -0,0 +1,71 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Route ranking over candidate sets made of the best few alternatives for
+ * random pairs. Each benchmark has its own state so running one does not
+ * pay for the other's setup.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RankingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Candidates {
+        @Param({"grid", "scalefree"})
+        public String shape;
+
+        @Param({"10000"})
+        public int nodes;
+
+        @Param({"100", "10000"})
+        public int routes;
+    }
+
+    @State(Scope.Benchmark)
+    public static class DistanceRanking {
+        IntFunction<Object> filter;
+
+        @Setup(Level.Trial)
+        public void setUp(Candidates candidates) {
+            filter = Workloads.create("filterRoutesByDistance", candidates.shape, candidates.nodes, candidates.routes);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LandmarkSearch {
+        IntFunction<Object> search;
+
+        @Setup(Level.Trial)
+        public void setUp(Candidates candidates) {
+            search = Workloads.create("searchRoutesByLandmark", candidates.shape, candidates.nodes, candidates.routes);
+        }
+    }
+
+    @Benchmark
+    public Object filterRoutesByDistance(DistanceRanking ranking, QueryCursor cursor) {
+        return ranking.filter.apply(cursor.advance());
+    }
+
+    @Benchmark
+    public Object searchRoutesByLandmark(LandmarkSearch landmarks, QueryCursor cursor) {
+        return landmarks.search.apply(cursor.advance());
+    }
+}
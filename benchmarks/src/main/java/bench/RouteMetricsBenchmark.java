@@ -0,0 +1,46 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * calculateTotalDistance plus calculateEstimatedArrivalTime over shortest
+ * paths, the per-route cost behind every ranking.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RouteMetricsBenchmark {
+    @Param({"grid", "geometric", "scalefree"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    private IntFunction<Object> routeMetrics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        routeMetrics = Workloads.create("routeMetrics", shape, nodes);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object latency(QueryCursor cursor) {
+        return routeMetrics.apply(cursor.advance());
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * findShortestPath between random connected pairs. latency samples every
+ * call for percentiles; throughput runs four threads against the same map.
+ * Larger graphs: -p nodes=1000000 (and a bigger -Xmx for 10^7).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RoutingBenchmark {
+    @Param({"grid", "geometric", "scalefree"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    @Param({"DIJKSTRA", "A_STAR", "ALT", "CONTRACTION_HIERARCHY"})
+    public String strategy;
+
+    private IntFunction<Object> shortestPath;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shortestPath = Workloads.create("shortestPath", shape, nodes, strategy);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object latency(QueryCursor cursor) {
+        return shortestPath.apply(cursor.advance());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public Object throughput(QueryCursor cursor) {
+        return shortestPath.apply(cursor.advance());
+    }
+}
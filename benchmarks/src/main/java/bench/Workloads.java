@@ -0,0 +1,32 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Looks up prepared operations on BenchmarkWorkloads. JMH refuses
+ * benchmarks in the default package and a named package cannot import
+ * from it, so the bridge is reflective; it only runs during setup.
+ */
+final class Workloads {
+    private static final String WORKLOADS_CLASS = "BenchmarkWorkloads";
+
+    private Workloads() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T create(String name, Object... arguments) {
+        try {
+            for (Method method : Class.forName(WORKLOADS_CLASS).getMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == arguments.length) {
+                    return (T) method.invoke(null, arguments);
+                }
+            }
+            throw new IllegalArgumentException("No workload named " + name);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Workload " + name + " failed to set up", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Workload " + name + " is not available", e);
+        }
+    }
+}
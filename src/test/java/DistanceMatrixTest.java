@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class DistanceMatrixTest {
+
+    @Test
+    void matchesSingleRouteQueries() {
+        CampusMap campusMap = TestGraphs.randomMap(new Random(11), 400, 150);
+        GraphSnapshot graph = campusMap.snapshot();
+        Random random = new Random(12);
+        int[] sources = new int[20];
+        int[] targets = new int[30];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(graph.getNodeCount());
+        }
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = random.nextInt(graph.getNodeCount());
+        }
+        targets[1] = targets[0]; // Duplicate columns
+        sources[2] = -1; // Unknown source
+        targets[3] = -1; // Unknown target
+
+        // Twice, so the second run reuses the contexts of the first
+        for (int run = 0; run < 2; run++) {
+            DistanceMatrix matrix = DistanceMatrix.compute(graph, sources, targets, true);
+            for (int row = 0; row < sources.length; row++) {
+                for (int column = 0; column < targets.length; column++) {
+                    checkCell(campusMap, graph, matrix, sources[row], targets[column], row, column);
+                }
+            }
+        }
+    }
+
+    private static void checkCell(CampusMap campusMap, GraphSnapshot graph, DistanceMatrix matrix,
+                                  int source, int target, int row, int column) {
+        if (source < 0 || target < 0) {
+            assertEquals(Double.POSITIVE_INFINITY, matrix.getDistance(row, column));
+            assertEquals(Double.POSITIVE_INFINITY, matrix.getArrivalTime(row, column));
+            return;
+        }
+        assertEquals(TestGraphs.referenceDistance(graph, source, target), matrix.getDistance(row, column), 1e-6);
+        List<CampusMap.Location> path = campusMap.findShortestPath(TestGraphs.name(source),
+                TestGraphs.name(target), RoutingStrategy.DIJKSTRA);
+        double arrivalTime = path == null ? Double.POSITIVE_INFINITY
+                : campusMap.calculateEstimatedArrivalTime(graph, path);
+        assertEquals(arrivalTime, matrix.getArrivalTime(row, column), 1e-9);
+    }
+
+    @Test
+    void pooledContextsGiveTheSameMatrixAndAreReturned() {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(14), 300, 100).snapshot();
+        int[] ids = new int[40];
+        Arrays.setAll(ids, i -> i * 7);
+        SearchContextPool pool = new SearchContextPool(64);
+        DistanceMatrix pooled = DistanceMatrix.compute(graph, ids, ids, true, pool);
+        DistanceMatrix threadLocal = DistanceMatrix.compute(graph, ids, ids, true);
+
+        assertArrayEquals(threadLocal.getDistances(), pooled.getDistances());
+        assertArrayEquals(threadLocal.getArrivalTimes(), pooled.getArrivalTimes());
+        assertTrue(pool.size() > 0);
+    }
+
+    @Test
+    void rejectsMatricesTooLargeForAnArray() {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(13), 10, 0).snapshot();
+        int[] ids = new int[1 << 16];
+        assertThrows(IllegalArgumentException.class, () -> DistanceMatrix.compute(graph, ids, ids, false));
+    }
+}
@@ -0,0 +1,45 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GraphImporterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void failedCsvImportReportsWhatWasPublished() throws IOException {
+        Path locations = directory.resolve("locations.csv");
+        Files.writeString(locations, "name,latitude,longitude\nA,5.65,-0.19\nB,5.651,-0.19\n");
+        CampusMap campusMap = new CampusMap();
+
+        ImportException e = assertThrows(ImportException.class,
+                () -> new GraphImporter(campusMap).importCsv(locations, directory.resolve("missing.csv")));
+        assertInstanceOf(NoSuchFileException.class, e.getCause());
+        assertEquals(2, e.getReport().getLocationCount());
+        assertEquals(2, campusMap.getLocationCount());
+    }
+
+    @Test
+    void malformedOsmReportsWhatWasPublished() {
+        String osm = "<?xml version='1.0'?><osm>"
+                + "<node id='1' lat='5.65' lon='-0.19'><tag k='name' v='Great Hall'/></node>"
+                + "<node id='2' lat='5.651' lon='-0.19'/>"
+                + "<way id='10'><nd ref='1'/><nd ref='2'/><tag k='highway' v='footway'/></way>"
+                + "<way id='11'><nd ref='2'";
+        CampusMap campusMap = new CampusMap();
+
+        ImportException e = assertThrows(ImportException.class, () -> new GraphImporter(campusMap)
+                .importOsm(new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)), "broken.osm"));
+        assertEquals(1, e.getReport().getEdgeCount());
+        assertEquals(e.getReport().getLocationCount(), campusMap.getLocationCount());
+    }
+}
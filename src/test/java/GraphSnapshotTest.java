@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GraphSnapshotTest {
+
+    @Test
+    void olderSnapshotsDoNotSeeLaterChanges() {
+        CampusMap campusMap = TestGraphs.randomMap(new Random(21), 300, 100);
+        GraphSnapshot old = campusMap.snapshot();
+        double[][] weights = weights(old);
+        long edgeCount = old.getEdgeCount();
+
+        TestGraphs.randomEdits(campusMap, new Random(22), 50);
+        assertEquals(edgeCount, old.getEdgeCount());
+        for (int node = 0; node < old.getNodeCount(); node++) {
+            for (int i = 0; i < old.degree(node); i++) {
+                assertEquals(weights[node][i], old.weight(node, i));
+            }
+        }
+    }
+
+    @Test
+    void landmarkTableSurvivesLongerAndRemovedPaths() {
+        Random random = new Random(23);
+        CampusMap campusMap = TestGraphs.randomMap(random, 400, 200);
+        GraphSnapshot before = campusMap.snapshot();
+        LandmarkTable table = before.getLandmarkTable();
+
+        campusMap.update(changes -> {
+            for (int i = 0; i < 30; i++) {
+                int node = random.nextInt(before.getNodeCount());
+                if (before.degree(node) > 0) {
+                    int neighbor = before.neighbor(node, 0);
+                    if (i % 2 == 0) {
+                        changes.removeDistance(node, neighbor);
+                    } else {
+                        changes.updateDistance(node, neighbor, before.weight(node, 0) * 3.0);
+                    }
+                }
+            }
+        });
+        GraphSnapshot after = campusMap.snapshot();
+        LandmarkTable carried = after.getLandmarkTable();
+        assertSame(after, carried.getGraph());
+        for (int i = 0; i < 500; i++) {
+            int node = random.nextInt(after.getNodeCount());
+            int target = random.nextInt(after.getNodeCount());
+            assertEquals(table.estimate(node, target), carried.estimate(node, target));
+            RoutingStrategyTest.checkPath(campusMap, after, node, target, RoutingStrategy.ALT, "carried");
+        }
+    }
+
+    @Test
+    void shorterPathsDiscardTheLandmarkTable() {
+        Random random = new Random(24);
+        CampusMap campusMap = TestGraphs.randomMap(random, 300, 100);
+        GraphSnapshot before = campusMap.snapshot();
+        before.getLandmarkTable();
+        TestGraphs.randomEdits(campusMap, random, 40);
+
+        GraphSnapshot after = campusMap.snapshot();
+        for (int i = 0; i < 200; i++) {
+            RoutingStrategyTest.checkPath(campusMap, after, random.nextInt(after.getNodeCount()),
+                    random.nextInt(after.getNodeCount()), RoutingStrategy.ALT, "rebuilt");
+        }
+    }
+
+    @Test
+    void geoHeuristicSurvivesNewLocationsAndTracksNewPaths() {
+        CampusMap campusMap = new CampusMap();
+        campusMap.addLocation("A", 5.6500, -0.1960);
+        campusMap.addLocation("B", 5.6510, -0.1960);
+        double straightLine = GeoMath.haversine(5.6500, -0.1960, 5.6510, -0.1960);
+        campusMap.addDistance("A", "B", straightLine * 2.0);
+        assertEquals(1.0, campusMap.getGeoHeuristic().getScale(), 1e-6);
+
+        campusMap.addLocation("C", 5.6520, -0.1960);
+        assertEquals(1.0, campusMap.getGeoHeuristic().getScale(), 1e-6);
+        campusMap.addDistance("B", "C", straightLine / 2.0);
+        assertEquals(0.5, campusMap.getGeoHeuristic().getScale(), 1e-6);
+        assertEquals(GeoHeuristic.validate(campusMap.snapshot()).getScale(),
+                campusMap.getGeoHeuristic().getScale(), 1e-12);
+
+        campusMap.addLocation("C", 5.6530, -0.1960);
+        assertEquals(GeoHeuristic.validate(campusMap.snapshot()).getScale(),
+                campusMap.getGeoHeuristic().getScale(), 1e-12);
+    }
+
+    @Test
+    void publishWithoutChangesKeepsEverything() {
+        CampusMap campusMap = TestGraphs.randomMap(new Random(25), 200, 50);
+        ContractionHierarchy hierarchy = campusMap.prepareContractionHierarchy();
+        SpatialIndex index = campusMap.snapshot().getSpatialIndex();
+        GraphSnapshot before = campusMap.snapshot();
+
+        campusMap.update(changes -> changes.addLocation(TestGraphs.name(0), before.getLatitude(0),
+                before.getLongitude(0)));
+        assertNotSame(before, campusMap.snapshot());
+        assertSame(hierarchy, campusMap.getContractionHierarchy());
+        assertSame(index, campusMap.snapshot().getSpatialIndex());
+    }
+
+    private static double[][] weights(GraphSnapshot graph) {
+        double[][] weights = new double[graph.getNodeCount()][];
+        for (int node = 0; node < weights.length; node++) {
+            weights[node] = new double[graph.degree(node)];
+            for (int i = 0; i < weights[node].length; i++) {
+                weights[node][i] = graph.weight(node, i);
+            }
+        }
+        return weights;
+    }
+}
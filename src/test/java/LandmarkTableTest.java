@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LandmarkTableTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void saveAndLoadGiveTheSameBounds() throws IOException {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(3), 600, 200).snapshot();
+        LandmarkTable table = LandmarkTable.build(graph, 8);
+        Path file = directory.resolve("campus.alt");
+        table.save(file);
+        LandmarkTable loaded = LandmarkTable.load(file, graph);
+
+        assertEquals(table.getLandmarkCount(), loaded.getLandmarkCount());
+        for (int i = 0; i < table.getLandmarkCount(); i++) {
+            assertEquals(table.getLandmark(i), loaded.getLandmark(i));
+        }
+        Random random = new Random(4);
+        for (int i = 0; i < 2000; i++) {
+            int node = random.nextInt(graph.getNodeCount());
+            int target = random.nextInt(graph.getNodeCount());
+            assertEquals(table.estimate(node, target), loaded.estimate(node, target));
+        }
+    }
+
+    @Test
+    void saveReplacesAnExistingTable() throws IOException {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(3), 200, 50).snapshot();
+        Path file = directory.resolve("campus.alt");
+        LandmarkTable.build(graph, 8).save(file);
+        LandmarkTable.build(graph, 3).save(file);
+        assertEquals(3, LandmarkTable.load(file, graph).getLandmarkCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count(), "temporary file left behind");
+        }
+    }
+
+    @Test
+    void boundsAreAdmissible() {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(5), 300, 100).snapshot();
+        LandmarkTable table = LandmarkTable.build(graph, 6);
+        Random random = new Random(6);
+        for (int i = 0; i < 300; i++) {
+            int node = random.nextInt(graph.getNodeCount());
+            int target = random.nextInt(graph.getNodeCount());
+            double distance = TestGraphs.referenceDistance(graph, node, target);
+            assertTrue(table.estimate(node, target) <= distance, node + " -> " + target);
+        }
+    }
+
+    @Test
+    void loadRejectsCorruptHeadersAndTruncatedTables() throws IOException {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(7), 200, 50).snapshot();
+        Path file = directory.resolve("campus.alt");
+        LandmarkTable.build(graph, 4).save(file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        assertRejected(graph, patchInt(bytes, 12, -1));
+        assertRejected(graph, patchInt(bytes, 12, 0));
+        assertRejected(graph, patchInt(bytes, 12, Integer.MAX_VALUE));
+        assertRejected(graph, patchInt(bytes, 24, graph.getNodeCount()));
+        assertRejected(graph, patchInt(bytes, 28, -5));
+        assertRejected(graph, Arrays.copyOf(bytes, bytes.length - 4));
+    }
+
+    private void assertRejected(GraphSnapshot graph, byte[] bytes) throws IOException {
+        Path file = directory.resolve("corrupt.alt");
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> LandmarkTable.load(file, graph));
+    }
+
+    private static byte[] patchInt(byte[] bytes, int offset, int value) {
+        byte[] patched = bytes.clone();
+        ByteBuffer.wrap(patched).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        return patched;
+    }
+
+    @Test
+    void loadRejectsAnotherGraph() throws IOException {
+        CampusMap campusMap = TestGraphs.randomMap(new Random(5), 300, 100);
+        Path file = directory.resolve("campus.alt");
+        LandmarkTable.build(campusMap.snapshot(), 4).save(file);
+
+        TestGraphs.randomEdits(campusMap, new Random(6), 10);
+        assertThrows(IOException.class, () -> LandmarkTable.load(file, campusMap.snapshot()));
+    }
+}
@@ -0,0 +1,37 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LocationTest {
+
+    @Test
+    void detachedLocationsKeepTheirOwnNeighbors() {
+        CampusMap.Location a = new CampusMap.Location("A", 5.650, -0.196);
+        CampusMap.Location b = new CampusMap.Location("B", 5.651, -0.196);
+        CampusMap.Location c = new CampusMap.Location("C", 5.652, -0.196);
+        a.addNeighbor(b, 120.0);
+        b.addNeighbor(c, 80.0);
+
+        assertEquals(120.0, a.getDistanceTo(b));
+        assertEquals(Double.POSITIVE_INFINITY, b.getDistanceTo(a));
+        assertEquals(1, a.getNeighbors().size());
+        assertEquals(200.0, new CampusMap().calculateTotalDistance(List.of(a, b, c)));
+    }
+
+    @Test
+    void mapLocationsPublishTheirNeighbors() {
+        CampusMap campusMap = new CampusMap();
+        campusMap.addLocation("A", 5.650, -0.196);
+        campusMap.addLocation("B", 5.651, -0.196);
+        CampusMap.Location a = campusMap.getLocation("A");
+        long version = campusMap.getVersion();
+
+        a.addNeighbor(campusMap.getLocation("B"), 150.0);
+        assertEquals(version + 1, campusMap.getVersion());
+        assertEquals(150.0, campusMap.getLocation("A").getDistanceTo(campusMap.getLocation("B")));
+        assertThrows(IllegalStateException.class,
+                () -> a.addNeighbor(new CampusMap.Location("C", 5.652, -0.196), 10.0));
+    }
+}
@@ -0,0 +1,225 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedGraphTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripKeepsEveryLocationAndPath() throws IOException {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(7), 700, 300).snapshot();
+        Path file = directory.resolve("campus.graph");
+        MappedGraph.write(graph, file);
+        MappedGraph mapped = MappedGraph.open(file);
+
+        assertEquals(graph.getNodeCount(), mapped.getNodeCount());
+        assertEquals(graph.getEdgeCount(), mapped.getEdgeCount());
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            assertEquals(graph.getName(node), mapped.getName(node));
+            assertEquals(node, mapped.idOf(graph.getName(node)));
+            assertEquals(graph.getLatitude(node), mapped.getLatitude(node));
+            assertEquals(graph.getLongitude(node), mapped.getLongitude(node));
+            assertEquals(graph.degree(node), mapped.degree(node));
+            for (int i = 0; i < graph.degree(node); i++) {
+                assertEquals(graph.neighbor(node, i), mapped.neighbor(node, i));
+                assertEquals(graph.weight(node, i), mapped.weight(node, i));
+            }
+        }
+        assertEquals(-1, mapped.idOf("nowhere"));
+    }
+
+    @Test
+    void shortestPathsMatchTheSnapshot() throws IOException {
+        Random random = new Random(8);
+        CampusMap campusMap = TestGraphs.randomMap(random, 400, 200);
+        Path file = directory.resolve("campus.graph");
+        campusMap.save(file);
+        MappedGraph mapped = MappedGraph.open(file);
+        CampusMap loaded = CampusMap.load(file);
+
+        for (int[] pair : TestGraphs.randomPairs(random, 400, 50)) {
+            String source = TestGraphs.name(pair[0]);
+            String destination = TestGraphs.name(pair[1]);
+            List<String> expected = names(campusMap.findShortestPath(source, destination));
+            assertEquals(expected, mapped.findShortestPath(source, destination));
+            assertEquals(expected, names(loaded.findShortestPath(source, destination)));
+        }
+    }
+
+    @Test
+    void loadedMapsReadTheFileUntilEditedAndStayEditable() throws IOException {
+        Random random = new Random(13);
+        CampusMap original = TestGraphs.randomMap(random, 700, 300);
+        Path file = directory.resolve("campus.graph");
+        original.save(file);
+        CampusMap loaded = CampusMap.load(file);
+
+        GraphSnapshot before = loaded.snapshot();
+        assertEquals(original.snapshot().getEdgeCount(), before.getEdgeCount());
+        assertEquals(original.getLocationNames(), loaded.getLocationNames());
+        CampusMap.Location untouched = before.getLocation(TestGraphs.name(600));
+        assertSame(untouched, before.getLocation(600));
+
+        // Edits copy only the chunks they touch; the rest keeps reading the file
+        loaded.addDistance(TestGraphs.name(1), TestGraphs.name(2), 5000.0);
+        loaded.addLocation("Extra", 5.6506, -0.1962);
+        loaded.addDistance("Extra", TestGraphs.name(699), 300.0);
+        assertSame(untouched, loaded.snapshot().getLocation(600));
+        for (int round = 0; round < 3; round++) {
+            GraphSnapshot graph = loaded.snapshot();
+            for (int[] pair : TestGraphs.randomPairs(random, graph.getNodeCount(), 20)) {
+                for (RoutingStrategy strategy : RoutingStrategy.values()) {
+                    RoutingStrategyTest.checkPath(loaded, graph, pair[0], pair[1], strategy, "round " + round);
+                }
+            }
+            TestGraphs.randomEdits(loaded, random, 20);
+        }
+    }
+
+    @Test
+    void loadedMapsKeepTheirOneWayPaths() throws IOException {
+        CampusMap original = TestGraphs.randomMap(new Random(15), 600, 200);
+        GraphSnapshot graph = original.snapshot();
+        graph.getLocation(3).addNeighbor(graph.getLocation(500), 4000.0);
+        Path file = directory.resolve("campus.graph");
+        original.save(file);
+        assertEquals(1, MappedGraph.open(file).getOneWayEdgeCount());
+
+        CampusMap loaded = CampusMap.load(file);
+        assertFalse(loaded.snapshot().isSymmetric());
+        // The path back is in a chunk still read from the file
+        loaded.addDistance(TestGraphs.name(500), TestGraphs.name(3), 4000.0);
+        assertTrue(loaded.snapshot().isSymmetric());
+    }
+
+    @Test
+    void writeRejectsDuplicateNames() {
+        GraphSnapshot graph = TestGraphs.randomMap(new Random(14), 10, 5).snapshot();
+        RoutingGraph duplicates = new RoutingGraph() {
+            @Override
+            public int getNodeCount() {
+                return graph.getNodeCount();
+            }
+
+            @Override
+            public long getEdgeCount() {
+                return graph.getEdgeCount();
+            }
+
+            @Override
+            public int degree(int node) {
+                return graph.degree(node);
+            }
+
+            @Override
+            public int neighbor(int node, int index) {
+                return graph.neighbor(node, index);
+            }
+
+            @Override
+            public double weight(int node, int index) {
+                return graph.weight(node, index);
+            }
+
+            @Override
+            public double distance(int source, int destination) {
+                return graph.distance(source, destination);
+            }
+
+            @Override
+            public double getLatitude(int node) {
+                return graph.getLatitude(node);
+            }
+
+            @Override
+            public double getLongitude(int node) {
+                return graph.getLongitude(node);
+            }
+
+            @Override
+            public String getName(int node) {
+                return node == 3 ? graph.getName(7) : graph.getName(node);
+            }
+        };
+        assertThrows(IOException.class, () -> MappedGraph.write(duplicates, directory.resolve("campus.graph")));
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        Path file = directory.resolve("campus.graph");
+        MappedGraph.write(TestGraphs.randomMap(new Random(9), 100, 50).snapshot(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = directory.resolve("truncated.graph");
+        Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> MappedGraph.open(truncated));
+    }
+
+    @Test
+    void rewritingLeavesOpenMappingsIntact() throws IOException {
+        GraphSnapshot first = TestGraphs.randomMap(new Random(10), 300, 100).snapshot();
+        GraphSnapshot second = TestGraphs.randomMap(new Random(11), 50, 10).snapshot();
+        Path file = directory.resolve("campus.graph");
+        MappedGraph.write(first, file);
+        MappedGraph mapped = MappedGraph.open(file);
+
+        MappedGraph.write(second, file);
+        assertEquals(first.getNodeCount(), mapped.getNodeCount());
+        for (int node = 0; node < first.getNodeCount(); node++) {
+            assertEquals(first.getName(node), mapped.getName(node));
+            assertEquals(first.degree(node), mapped.degree(node));
+        }
+        assertEquals(second.getNodeCount(), MappedGraph.open(file).getNodeCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.collect(Collectors.toList()), "temporary file left behind");
+        }
+    }
+
+    @Test
+    void rejectsSectionsOutsideTheFile() throws IOException {
+        Path file = directory.resolve("campus.graph");
+        MappedGraph.write(TestGraphs.randomMap(new Random(12), 100, 50).snapshot(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // Each section's position and length follow the 24-byte fixed header
+        for (int section = 0; section < 8; section++) {
+            for (long value : new long[] {Long.MAX_VALUE, -8, bytes.length + 8L}) {
+                for (int field = 0; field < 2; field++) {
+                    byte[] corrupt = bytes.clone();
+                    ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN)
+                            .putLong(24 + 16 * section + 8 * field, value);
+                    Path corruptFile = directory.resolve("corrupt.graph");
+                    Files.write(corruptFile, corrupt);
+                    assertThrows(IOException.class, () -> MappedGraph.open(corruptFile),
+                            "section " + section + " field " + field + " = " + value);
+                }
+            }
+        }
+    }
+
+    private static List<String> names(List<CampusMap.Location> path) {
+        if (path == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<>(path.size());
+        for (CampusMap.Location location : path) {
+            names.add(location.getName());
+        }
+        return names;
+    }
+}
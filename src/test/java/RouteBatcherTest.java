@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class RouteBatcherTest {
+
+    @Test
+    void concurrentRequestsMatchDijkstra() throws Exception {
+        Random random = new Random(31);
+        CampusMap campusMap = TestGraphs.randomMap(random, 2000, 1000);
+        GraphSnapshot graph = campusMap.snapshot();
+        RouteBatcher batcher = new RouteBatcher(campusMap);
+
+        // Few sources, so requests pile up behind running expansions and get batched
+        List<int[]> pairs = TestGraphs.randomPairs(random, graph.getNodeCount(), 400);
+        for (int[] pair : pairs) {
+            pair[0] %= 4;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Route>> routes = new ArrayList<>();
+            for (int[] pair : pairs) {
+                routes.add(executor.submit(() -> batcher.route(TestGraphs.name(pair[0]), TestGraphs.name(pair[1]))));
+            }
+            for (int i = 0; i < pairs.size(); i++) {
+                int[] pair = pairs.get(i);
+                Route route = routes.get(i).get();
+                double expected = TestGraphs.referenceDistance(graph, pair[0], pair[1]);
+                if (expected == Double.POSITIVE_INFINITY) {
+                    assertNull(route);
+                } else {
+                    assertNotNull(route);
+                    assertEquals(expected, route.getTotalDistance(), 1e-9 * expected);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(pairs.size(), batcher.getRequestCount());
+        assertTrue(batcher.getBatchCount() <= pairs.size());
+    }
+
+    @Test
+    void poolKeepsAtMostMaxIdleContextsOfTheRightSize() {
+        SearchContextPool pool = new SearchContextPool(2);
+        SearchContext first = pool.acquire(100);
+        SearchContext second = pool.acquire(100);
+        SearchContext third = pool.acquire(100);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(2, pool.size());
+
+        assertSame(first, pool.acquire(50));
+        SearchContext larger = pool.acquire(200);
+        assertTrue(larger.capacity() >= 200);
+        assertEquals(0, pool.size(), "contexts too small for the graph are dropped");
+    }
+}
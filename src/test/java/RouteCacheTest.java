@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class RouteCacheTest {
+
+    @Test
+    void repeatedLookupsHitUntilTheMapChanges() {
+        CampusMap campusMap = demoMap();
+        RouteCache cache = new RouteCache(campusMap, 16, Duration.ofMinutes(1));
+        Route first = cache.get("A", "C", RoutingStrategy.DIJKSTRA);
+        assertSame(first, cache.get("A", "C", RoutingStrategy.DIJKSTRA));
+        assertEquals(1, cache.getHitCount());
+
+        campusMap.updateDistance("A", "B", 50.0);
+        Route second = cache.get("A", "C", RoutingStrategy.DIJKSTRA);
+        assertEquals(130.0, second.getTotalDistance());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void waitersRecomputeWhenTheLoadingCallerIsCancelled() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Thread[] waiter = new Thread[1];
+        CampusMap campusMap = new CampusMap() {
+            @Override
+            Route findRoute(GraphSnapshot graph, String source, String destination, RoutingStrategy strategy) {
+                if (calls.getAndIncrement() == 0) {
+                    loading.countDown();
+                    // Give up only once the other caller is waiting on this computation
+                    while (waiter[0] == null || waiter[0].getState() != Thread.State.WAITING) {
+                        Thread.onSpinWait();
+                    }
+                    throw new CancellationException("Search interrupted");
+                }
+                return super.findRoute(graph, source, destination, strategy);
+            }
+        };
+        addDemoPaths(campusMap);
+        RouteCache cache = new RouteCache(campusMap, 16, Duration.ofMinutes(1));
+
+        CompletableFuture<Route> waited = new CompletableFuture<>();
+        waiter[0] = new Thread(() -> {
+            try {
+                loading.await();
+                waited.complete(cache.get("A", "C", RoutingStrategy.DIJKSTRA));
+            } catch (Throwable e) {
+                waited.completeExceptionally(e);
+            }
+        });
+        waiter[0].start();
+
+        assertThrows(CancellationException.class, () -> cache.get("A", "C", RoutingStrategy.DIJKSTRA));
+        Route route = waited.get();
+        assertNotNull(route);
+        assertEquals(180.0, route.getTotalDistance());
+        assertEquals(2, calls.get());
+        assertSame(route, cache.get("A", "C", RoutingStrategy.DIJKSTRA));
+    }
+
+    @Test
+    void interruptedWaitersStopWaiting() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CampusMap campusMap = new CampusMap() {
+            @Override
+            Route findRoute(GraphSnapshot graph, String source, String destination, RoutingStrategy strategy) {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                return super.findRoute(graph, source, destination, strategy);
+            }
+        };
+        addDemoPaths(campusMap);
+        RouteCache cache = new RouteCache(campusMap, 16, Duration.ofMinutes(1));
+
+        CompletableFuture<Route> loaded = CompletableFuture.supplyAsync(
+                () -> cache.get("A", "C", RoutingStrategy.DIJKSTRA));
+        loading.await();
+        CompletableFuture<Throwable> waited = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                cache.get("A", "C", RoutingStrategy.DIJKSTRA);
+                waited.complete(null);
+            } catch (Throwable e) {
+                waited.complete(Thread.currentThread().isInterrupted() ? e : new AssertionError("Flag cleared", e));
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        waiter.interrupt();
+
+        assertInstanceOf(CancellationException.class, waited.get(10, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals(180.0, loaded.get().getTotalDistance());
+    }
+
+    @Test
+    void pipelineQueriesGoThroughTheMapsCache() throws Exception {
+        CampusMap campusMap = demoMap();
+        Route cached = campusMap.findRoute("A", "C", RoutingStrategy.DIJKSTRA);
+        CompletableFuture<Route> delivered = new CompletableFuture<>();
+        try (RouteQueryPipeline pipeline = new RouteQueryPipeline(campusMap, Runnable::run)) {
+            pipeline.submit("A", "C", RoutingStrategy.DIJKSTRA, delivered::complete, delivered::completeExceptionally);
+            assertSame(cached, delivered.get());
+        }
+        assertEquals(1, campusMap.getRouteCache().getHitCount());
+    }
+
+    private static CampusMap demoMap() {
+        CampusMap campusMap = new CampusMap();
+        addDemoPaths(campusMap);
+        return campusMap;
+    }
+
+    private static void addDemoPaths(CampusMap campusMap) {
+        campusMap.update(changes -> {
+            changes.addLocation("A", 5.6500, -0.1960);
+            changes.addLocation("B", 5.6505, -0.1960);
+            changes.addLocation("C", 5.6510, -0.1960);
+            changes.addDistance("A", "B", 100.0);
+            changes.addDistance("B", "C", 80.0);
+        });
+    }
+}
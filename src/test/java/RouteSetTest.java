@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RouteSetTest {
+
+    @Test
+    void landmarkSearchMatchesAScanOverEveryRoute() {
+        Random random = new Random(41);
+        CampusMap campusMap = TestGraphs.randomMap(random, 5000, 1000);
+        GraphSnapshot graph = campusMap.snapshot();
+        CampusMap.Location detached = new CampusMap.Location("Detached", 5.65, -0.19);
+        CampusMap.Location namesake = new CampusMap.Location(TestGraphs.name(7), 5.65, -0.19);
+
+        List<List<CampusMap.Location>> routes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            if (i % 50 == 0) {
+                routes.add(null);
+                continue;
+            }
+            List<CampusMap.Location> route = new ArrayList<>();
+            for (int j = random.nextInt(12); j >= 0; j--) {
+                route.add(graph.getLocation(random.nextInt(20)));
+            }
+            if (i % 7 == 0) {
+                route.add(random.nextBoolean() ? detached : namesake);
+            }
+            if (i % 11 == 0) {
+                route.add(null);
+            }
+            routes.add(route);
+        }
+
+        RouteSet set = campusMap.createRouteSet(routes);
+        for (String landmark : Arrays.asList("Detached", "nowhere", null, TestGraphs.name(7), TestGraphs.name(3),
+                TestGraphs.name(4999))) {
+            List<List<CampusMap.Location>> expected = scan(routes, landmark);
+            assertEquals(expected, campusMap.searchRoutesByLandmark(routes, landmark), String.valueOf(landmark));
+            assertEquals(expected, set.withLandmark(landmark).getRoutes(), String.valueOf(landmark));
+        }
+        assertTrue(campusMap.searchRoutesByLandmark(null, "Detached").isEmpty());
+    }
+
+    @Test
+    void rankingsAgreeWithTheRouteMetrics() {
+        Random random = new Random(42);
+        CampusMap campusMap = TestGraphs.randomMap(random, 500, 300);
+        List<List<CampusMap.Location>> routes = campusMap.findAlternativeRoutes(TestGraphs.name(1),
+                TestGraphs.name(2), 20);
+        RouteSet set = campusMap.createRouteSet(routes);
+
+        List<List<CampusMap.Location>> sorted = set.sortedByDistance();
+        for (int i = 0; i + 1 < sorted.size(); i++) {
+            assertTrue(campusMap.calculateTotalDistance(sorted.get(i))
+                    <= campusMap.calculateTotalDistance(sorted.get(i + 1)));
+        }
+        assertEquals(sorted.subList(0, Math.min(3, sorted.size())), set.topByDistance(3));
+    }
+
+    // The linear scan searchRoutesByLandmark used to do
+    private static List<List<CampusMap.Location>> scan(List<List<CampusMap.Location>> routes, String landmark) {
+        List<List<CampusMap.Location>> filtered = new ArrayList<>();
+        for (List<CampusMap.Location> route : routes) {
+            if (route != null) {
+                for (CampusMap.Location location : route) {
+                    if (location != null && location.getName() != null && location.getName().equals(landmark)) {
+                        filtered.add(route);
+                        break;
+                    }
+                }
+            }
+        }
+        return filtered;
+    }
+}
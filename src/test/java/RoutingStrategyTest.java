@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RoutingStrategyTest {
+
+    // Every strategy's first query on each snapshot builds whatever that strategy precomputes
+    @Test
+    void everyStrategyMatchesDijkstraAcrossPublishes() {
+        for (int seed = 0; seed < 12; seed++) {
+            Random random = new Random(seed);
+            CampusMap campusMap = TestGraphs.randomMap(random, 200 + random.nextInt(300), 150);
+            for (int round = 0; round < 4; round++) {
+                GraphSnapshot graph = campusMap.snapshot();
+                for (int[] pair : TestGraphs.randomPairs(random, graph.getNodeCount(), 15)) {
+                    for (RoutingStrategy strategy : RoutingStrategy.values()) {
+                        checkPath(campusMap, graph, pair[0], pair[1], strategy, "seed " + seed + " round " + round);
+                    }
+                }
+                TestGraphs.randomEdits(campusMap, random, 1 + random.nextInt(30));
+            }
+        }
+    }
+
+    // Building the landmark table lazily used to run landmark searches on the querying thread's context
+    @Test
+    void altOnAFreshSnapshotMatchesDijkstra() {
+        for (int seed = 0; seed < 30; seed++) {
+            Random random = new Random(seed);
+            CampusMap campusMap = TestGraphs.randomMap(random, 300 + random.nextInt(300), 200);
+            GraphSnapshot graph = campusMap.snapshot();
+            int source = random.nextInt(graph.getNodeCount());
+            int destination = random.nextInt(graph.getNodeCount());
+            checkPath(campusMap, graph, source, destination, RoutingStrategy.ALT, "seed " + seed);
+        }
+    }
+
+    // Location.addNeighbor adds one direction only, which the backward searches and precomputations can't follow
+    @Test
+    void oneWayPathsFallBackToDijkstra() {
+        for (int seed = 0; seed < 8; seed++) {
+            Random random = new Random(seed);
+            CampusMap campusMap = TestGraphs.randomMap(random, 200 + random.nextInt(200), 100);
+            for (RoutingStrategy strategy : RoutingStrategy.values()) {
+                // Builds the hierarchy, landmarks and a tree on the symmetric map first
+                campusMap.findShortestPath(TestGraphs.name(0), TestGraphs.name(1), strategy);
+            }
+            GraphSnapshot symmetric = campusMap.snapshot();
+            int[][] oneWay = new int[20][];
+            for (int i = 0; i < oneWay.length; i++) {
+                int source = random.nextInt(symmetric.getNodeCount());
+                int destination = random.nextInt(symmetric.getNodeCount());
+                oneWay[i] = new int[] {source, destination};
+                symmetric.getLocation(source).addNeighbor(symmetric.getLocation(destination),
+                        TestGraphs.randomDistance(random, symmetric, source, destination));
+            }
+
+            GraphSnapshot graph = campusMap.snapshot();
+            assertFalse(graph.isSymmetric(), "seed " + seed);
+            for (int[] pair : oneWay) {
+                for (RoutingStrategy strategy : RoutingStrategy.values()) {
+                    checkPath(campusMap, graph, pair[0], pair[1], strategy, "seed " + seed);
+                    checkPath(campusMap, graph, pair[1], pair[0], strategy, "seed " + seed);
+                }
+                List<List<CampusMap.Location>> routes = campusMap.findAlternativeRoutes(
+                        TestGraphs.name(pair[0]), TestGraphs.name(pair[1]), 3);
+                assertEquals(1, routes.size(), "seed " + seed);
+                assertEquals(TestGraphs.referenceDistance(graph, pair[0], pair[1]),
+                        TestGraphs.pathLength(graph, routes.get(0)), 1e-9, "seed " + seed);
+            }
+
+            // Paths back of the same distance make the map symmetric again
+            for (int[] pair : oneWay) {
+                if (pair[0] != pair[1]) {
+                    campusMap.addDistance(TestGraphs.name(pair[0]), TestGraphs.name(pair[1]),
+                            graph.distance(pair[0], pair[1]));
+                }
+            }
+            assertTrue(campusMap.snapshot().isSymmetric(), "seed " + seed);
+        }
+    }
+
+    @Test
+    void unknownLocationsHaveNoPath() {
+        CampusMap campusMap = TestGraphs.randomMap(new Random(1), 20, 5);
+        for (RoutingStrategy strategy : RoutingStrategy.values()) {
+            assertNull(campusMap.findShortestPath("nowhere", TestGraphs.name(0), strategy));
+            assertNull(campusMap.findShortestPath(TestGraphs.name(0), "nowhere", strategy));
+        }
+    }
+
+    static void checkPath(CampusMap campusMap, GraphSnapshot graph, int source, int destination,
+                          RoutingStrategy strategy, String context) {
+        String message = context + ", " + strategy + " " + source + " -> " + destination;
+        double expected = TestGraphs.referenceDistance(graph, source, destination);
+        List<CampusMap.Location> path = campusMap.findShortestPath(graph, graph.getName(source),
+                graph.getName(destination), strategy);
+        if (expected == Double.POSITIVE_INFINITY) {
+            assertNull(path, message);
+            return;
+        }
+        assertNotNull(path, message);
+        assertEquals(source, path.get(0).getId(), message);
+        assertEquals(destination, path.get(path.size() - 1).getId(), message);
+        assertEquals(expected, TestGraphs.pathLength(graph, path), 1e-9 * Math.max(1.0, expected), message);
+    }
+}
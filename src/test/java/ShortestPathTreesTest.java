@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ShortestPathTreesTest {
+
+    @Test
+    void repairedTreesMatchDijkstraUnderMixedEdits() {
+        Random random = new Random(11);
+        CampusMap campusMap = TestGraphs.randomMap(random, 800, 400);
+        int[] origins = {0, 1, 2, 3, 4};
+
+        for (int round = 0; round < 40; round++) {
+            GraphSnapshot graph = campusMap.snapshot();
+            for (int origin : origins) {
+                for (int i = 0; i < 5; i++) {
+                    RoutingStrategyTest.checkPath(campusMap, graph, origin, random.nextInt(graph.getNodeCount()),
+                            RoutingStrategy.DYNAMIC, "round " + round);
+                }
+            }
+            TestGraphs.randomEdits(campusMap, random, 1 + random.nextInt(20));
+        }
+
+        ShortestPathTrees trees = campusMap.getShortestPathTrees();
+        assertEquals(origins.length, trees.getBuildCount(), "trees were rebuilt instead of repaired");
+        assertEquals(39L * origins.length, trees.getRepairCount());
+    }
+
+    @Test
+    void singleEditsAreRepairedOneAtATime() {
+        Random random = new Random(12);
+        CampusMap campusMap = TestGraphs.randomMap(random, 300, 150);
+        for (int round = 0; round < 200; round++) {
+            GraphSnapshot graph = campusMap.snapshot();
+            RoutingStrategyTest.checkPath(campusMap, graph, 0, random.nextInt(graph.getNodeCount()),
+                    RoutingStrategy.DYNAMIC, "round " + round);
+            TestGraphs.randomEdits(campusMap, random, 1);
+        }
+        assertEquals(1, campusMap.getShortestPathTrees().getBuildCount());
+    }
+
+    @Test
+    void metricsCountTheWorkOfBuildsAndRepairs() {
+        Random random = new Random(15);
+        CampusMap campusMap = TestGraphs.randomMap(random, 2000, 500);
+        RoutingMetrics metrics = campusMap.getRoutingMetrics();
+        metrics.setEnabled(true);
+        String origin = TestGraphs.name(0);
+
+        campusMap.findShortestPath(origin, TestGraphs.name(1), RoutingStrategy.DYNAMIC);
+        long built = settled(metrics);
+        assertTrue(built > 1000, "a build settles everything reachable: " + built);
+
+        campusMap.findShortestPath(origin, TestGraphs.name(2), RoutingStrategy.DYNAMIC);
+        assertEquals(built, settled(metrics), "a current tree needs no search");
+
+        TestGraphs.randomEdits(campusMap, random, 3);
+        campusMap.findShortestPath(origin, TestGraphs.name(3), RoutingStrategy.DYNAMIC);
+        long repaired = settled(metrics) - built;
+        assertTrue(repaired < built, "a repair only settles what changed: " + repaired);
+        assertEquals(1, campusMap.getShortestPathTrees().getRepairCount());
+    }
+
+    private static long settled(RoutingMetrics metrics) {
+        return metrics.getStatistics().get(RoutingStrategy.DYNAMIC.name() + ".settledNodes");
+    }
+
+    @Test
+    void olderSnapshotsAreAnsweredWithoutTheTree() {
+        Random random = new Random(13);
+        CampusMap campusMap = TestGraphs.randomMap(random, 300, 150);
+        GraphSnapshot old = campusMap.snapshot();
+        TestGraphs.randomEdits(campusMap, random, 20);
+        GraphSnapshot current = campusMap.snapshot();
+
+        for (int i = 0; i < 50; i++) {
+            int destination = random.nextInt(old.getNodeCount());
+            RoutingStrategyTest.checkPath(campusMap, current, 0, destination, RoutingStrategy.DYNAMIC, "current");
+            RoutingStrategyTest.checkPath(campusMap, old, 0, destination, RoutingStrategy.DYNAMIC, "old");
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedOriginsAreEvicted() {
+        CampusMap campusMap = TestGraphs.randomMap(new Random(14), 200, 50);
+        ShortestPathTrees trees = campusMap.getShortestPathTrees();
+        for (int origin = 0; origin < trees.getMaxOrigins() + 5; origin++) {
+            campusMap.findShortestPath(TestGraphs.name(origin), TestGraphs.name(199), RoutingStrategy.DYNAMIC);
+        }
+        assertEquals(trees.getMaxOrigins(), trees.size());
+        assertTrue(trees.getEvictionCount() >= 5);
+    }
+}
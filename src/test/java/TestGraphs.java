@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random campus-sized graphs for the routing tests, and a plain Dijkstra
+ * to check the routing strategies against.
+ */
+final class TestGraphs {
+    // About a kilometre around the Great Hall
+    private static final double ORIGIN_LATITUDE = 5.6506;
+    private static final double ORIGIN_LONGITUDE = -0.1962;
+    private static final double SPAN_DEGREES = 0.01;
+
+    private TestGraphs() {
+    }
+
+    static String name(int id) {
+        return "L" + id;
+    }
+
+    /**
+     * A map with nodeCount locations, a random spanning tree over most of
+     * them and some extra paths. Every distance is at least the straight
+     * line between its end points, so the geo heuristic stays unscaled. A
+     * few locations are left without paths.
+     */
+    static CampusMap randomMap(Random random, int nodeCount, int extraPaths) {
+        CampusMap campusMap = new CampusMap();
+        campusMap.update(changes -> {
+            for (int id = 0; id < nodeCount; id++) {
+                changes.addLocation(name(id), ORIGIN_LATITUDE + random.nextDouble() * SPAN_DEGREES,
+                        ORIGIN_LONGITUDE + random.nextDouble() * SPAN_DEGREES);
+            }
+        });
+        GraphSnapshot graph = campusMap.snapshot();
+        campusMap.update(changes -> {
+            for (int id = 1; id < nodeCount; id++) {
+                if (random.nextInt(20) != 0) {
+                    int other = random.nextInt(id);
+                    changes.addDistance(id, other, randomDistance(random, graph, id, other));
+                }
+            }
+            for (int i = 0; i < extraPaths; i++) {
+                int source = random.nextInt(nodeCount);
+                int destination = random.nextInt(nodeCount);
+                if (source != destination) {
+                    changes.addDistance(source, destination, randomDistance(random, graph, source, destination));
+                }
+            }
+        });
+        return campusMap;
+    }
+
+    static double randomDistance(Random random, RoutingGraph graph, int source, int destination) {
+        double straightLine = GeoMath.haversine(graph.getLatitude(source), graph.getLongitude(source),
+                graph.getLatitude(destination), graph.getLongitude(destination));
+        return Math.ceil(straightLine * (1.0 + random.nextDouble()));
+    }
+
+    /**
+     * Applies count random changes in one publish: paths lengthened,
+     * shortened, removed and added, and now and then a new location with a
+     * path to the rest of the map.
+     */
+    static void randomEdits(CampusMap campusMap, Random random, int count) {
+        GraphSnapshot graph = campusMap.snapshot();
+        campusMap.update(changes -> {
+            for (int i = 0; i < count; i++) {
+                int source = random.nextInt(graph.getNodeCount());
+                int degree = graph.degree(source);
+                int kind = random.nextInt(5);
+                if (degree > 0 && kind < 3) {
+                    int index = random.nextInt(degree);
+                    int destination = graph.neighbor(source, index);
+                    double distance = graph.weight(source, index);
+                    if (kind == 0) {
+                        changes.removeDistance(source, destination);
+                    } else if (kind == 1) {
+                        changes.updateDistance(source, destination, distance * 2.0 + 1.0);
+                    } else {
+                        double straightLine = GeoMath.haversine(graph.getLatitude(source),
+                                graph.getLongitude(source), graph.getLatitude(destination),
+                                graph.getLongitude(destination));
+                        changes.updateDistance(source, destination, Math.max(straightLine, distance / 2.0));
+                    }
+                } else if (kind == 3) {
+                    int destination = random.nextInt(graph.getNodeCount());
+                    if (destination != source && graph.distance(source, destination) == Double.POSITIVE_INFINITY) {
+                        changes.addDistance(source, destination,
+                                randomDistance(random, graph, source, destination));
+                    }
+                } else {
+                    String name = "N" + graph.getVersion() + "-" + i;
+                    int id = changes.addLocation(name, graph.getLatitude(source), graph.getLongitude(source) + 1e-4);
+                    changes.addDistance(id, source, 20.0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Shortest distance by a textbook Dijkstra on a fresh context.
+     */
+    static double referenceDistance(RoutingGraph graph, int source, int destination) {
+        return RoutingEngine.dijkstra(graph, source, destination, new SearchContext(graph.getNodeCount()));
+    }
+
+    /**
+     * Length of the path through the graph, or NaN if two consecutive
+     * locations are not connected.
+     */
+    static double pathLength(RoutingGraph graph, List<CampusMap.Location> path) {
+        double length = 0.0;
+        for (int i = 0; i + 1 < path.size(); i++) {
+            double distance = graph.distance(path.get(i).getId(), path.get(i + 1).getId());
+            if (distance == Double.POSITIVE_INFINITY) {
+                return Double.NaN;
+            }
+            length += distance;
+        }
+        return length;
+    }
+
+    static List<int[]> randomPairs(Random random, int nodeCount, int count) {
+        List<int[]> pairs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pairs.add(new int[] {random.nextInt(nodeCount), random.nextInt(nodeCount)});
+        }
+        return pairs;
+    }
+}